@@ -0,0 +1,55 @@
+package io.github.tt432.flexhud;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full HUD frames through {@link HeadlessHud}, with layers that really draw into the recording GuiGraphics.
+ * HeadlessHudTest checks the frame's contract: one fill per visible element at its resolved rect, and no allocation
+ * once the frame is steady.
+ *
+ * @author TT432
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeadlessHudBenchmark {
+    @Param({"1", "100", "1000"})
+    public int elementCount;
+
+    private HeadlessHud hud;
+    private boolean toggle;
+
+    @Setup
+    public void setup() {
+        FlexHudApi.Impl impl = new FlexHudApi.Impl();
+        HudFixtures.populate(impl, elementCount, HudFixtures.FILL_RECT);
+        hud = new HeadlessHud(impl, HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT, 2);
+    }
+
+    /**
+     * Steady-state frame, layout unchanged
+     */
+    @Benchmark
+    public int frame() {
+        return hud.frame().getCallCount();
+    }
+
+    /**
+     * Window resized between two known sizes every frame, layouts come from the cache
+     */
+    @Benchmark
+    public int resizeFrame() {
+        toggle = !toggle;
+        hud.resize(toggle ? HudFixtures.SCREEN_WIDTH : HudFixtures.SCREEN_WIDTH + 1, HudFixtures.SCREEN_HEIGHT, 2);
+        return hud.frame().getCallCount();
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.client.DeltaTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the per-frame HUD pass driven by {@link FlexHud}: the layout update followed by the render loop.
+ * Layers only touch their rect, so the numbers are the framework's own overhead.
+ *
+ * @author TT432
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HudPassBenchmark {
+    @Param({"1", "100", "1000", "10000"})
+    public int elementCount;
+
+    private FlexHudApi.Impl impl;
+    private boolean toggle;
+    private int newSize;
+    private float rendered;
+
+    @Setup
+    public void setup() {
+        impl = new FlexHudApi.Impl();
+        HudFixtures.populate(impl, elementCount, (rect, guiGraphics, deltaTracker) -> rendered += rect.getW());
+        impl.updateScreenDimensions(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT, 2);
+    }
+
+    /**
+     * Steady state: screen metrics and rects unchanged since the previous frame
+     */
+    @Benchmark
+    public void updateScreenDimensions() {
+        impl.updateScreenDimensions(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT, 2);
+    }
+
+    /**
+     * Flipping between two known window sizes every frame, both layouts come from the cache
+     */
+    @Benchmark
+    public void updateScreenDimensionsResize() {
+        toggle = !toggle;
+        int width = toggle ? HudFixtures.SCREEN_WIDTH : HudFixtures.SCREEN_WIDTH + 1;
+        impl.updateScreenDimensions(width, HudFixtures.SCREEN_HEIGHT, 2);
+    }
+
+    /**
+     * Worst case: a window size not seen recently every frame, so every element is re-resolved
+     */
+    @Benchmark
+    public void updateScreenDimensionsNewSize() {
+        // Cycle through more sizes than the layout cache holds
+        newSize = (newSize + 1) % 64;
+        impl.updateScreenDimensions(HudFixtures.SCREEN_WIDTH + newSize, HudFixtures.SCREEN_HEIGHT, 2);
+    }
+
+    /**
+     * Editor hit test at the screen centre, where the benchmark anchors cluster
+     */
+    @Benchmark
+    public FlexHudApi.HudElement elementAt() {
+        return impl.findElementAt(HudFixtures.SCREEN_WIDTH / 2f, HudFixtures.SCREEN_HEIGHT / 2f);
+    }
+
+    @Benchmark
+    public float renderLoop() {
+        impl.renderElements(null, DeltaTracker.ZERO);
+        return rendered;
+    }
+
+    /**
+     * Full steady-state frame as done in FlexHud#onRenderGui
+     */
+    @Benchmark
+    public float frame() {
+        impl.updateScreenDimensions(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT, 2);
+        impl.renderElements(null, DeltaTracker.ZERO);
+        return rendered;
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.tt432.flexhud;
+
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmarks for the pure layout math in {@link FlexHudApi.RelativeRect} and {@link FlexHudApi.Rect}.
+ * Each invocation processes {@code elementCount} rects.
+ *
+ * @author TT432
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LayoutBenchmark {
+    @Param({"1", "100", "1000", "10000"})
+    public int elementCount;
+
+    private FlexHudApi.RelativeRect[] relativeRects;
+    private FlexHudApi.Rect[] rects;
+    private FlexHudApi.Rect[] defaultRects;
+    private FlexHudApi.Rect out;
+    private Matrix4f matrix;
+    private PackedRects packed;
+
+    @Setup
+    public void setup() {
+        relativeRects = HudFixtures.relativeRects(elementCount);
+        rects = new FlexHudApi.Rect[elementCount];
+        defaultRects = new FlexHudApi.Rect[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            rects[i] = relativeRects[i].toAbsolute(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT);
+            defaultRects[i] = relativeRects[i].toAbsolute(HudFixtures.SCREEN_WIDTH / 2, HudFixtures.SCREEN_HEIGHT / 2);
+        }
+        out = new FlexHudApi.Rect(0, 0, 0, 0);
+        matrix = new Matrix4f();
+
+        packed = new PackedRects(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+            packed.pack(i, relativeRects[i]);
+        }
+    }
+
+    @Benchmark
+    public void toAbsolute(Blackhole bh) {
+        for (FlexHudApi.RelativeRect relativeRect : relativeRects) {
+            bh.consume(relativeRect.toAbsolute(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT));
+        }
+    }
+
+    @Benchmark
+    public void toAbsoluteInPlace(Blackhole bh) {
+        for (FlexHudApi.RelativeRect relativeRect : relativeRects) {
+            bh.consume(relativeRect.toAbsolute(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT, out));
+        }
+    }
+
+    /**
+     * Same work as toAbsoluteInPlace on the struct-of-arrays store used by ResolvedLayout
+     */
+    @Benchmark
+    public float resolvePacked() {
+        packed.resolveAll(elementCount, HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT);
+        return packed.x[elementCount - 1];
+    }
+
+    @Benchmark
+    public void fromAbsolute(Blackhole bh) {
+        for (int i = 0; i < rects.length; i++) {
+            bh.consume(FlexHudApi.RelativeRect.fromAbsolute(rects[i], relativeRects[i].getAnchor(),
+                    HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT));
+        }
+    }
+
+    @Benchmark
+    public void transform(Blackhole bh) {
+        for (int i = 0; i < rects.length; i++) {
+            bh.consume(defaultRects[i].transform(rects[i]));
+        }
+    }
+
+    @Benchmark
+    public void transformInPlace(Blackhole bh) {
+        for (int i = 0; i < rects.length; i++) {
+            bh.consume(defaultRects[i].transform(rects[i], matrix));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.tt432.flexhud;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the config screen's placeholder geometry into a {@link QuadBatch}, without submitting it.
+ * Each element adds the editor's own quads through {@link FlexHudConfigScreen#addPlaceholderQuads}.
+ *
+ * @author TT432
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuadBatchBenchmark {
+    @Param({"1", "100", "1000"})
+    public int elementCount;
+
+    private FlexHudApi.Rect[] rects;
+    private QuadBatch batch;
+    private FlexHudConfigScreen.LabelBoxes labels;
+
+    @Setup
+    public void setup() {
+        FlexHudApi.RelativeRect[] relativeRects = HudFixtures.relativeRects(elementCount);
+        rects = new FlexHudApi.Rect[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            rects[i] = relativeRects[i].toAbsolute(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT);
+        }
+        batch = new QuadBatch();
+        labels = HudFixtures.labelBoxes();
+    }
+
+    @Benchmark
+    public int build() {
+        batch.clear();
+        for (FlexHudApi.Rect rect : rects) {
+            FlexHudConfigScreen.addPlaceholderQuads(batch, rect, true, 0x40FFFFFF, 0xFFFFFFFF, labels);
+        }
+        return batch.getVertexCount();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.resources.ResourceLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registering a mod's worth of elements into a fresh registry, one at a time versus as one batch.
+ * Bypasses config persistence like {@link HudFixtures#populate}, so only publication is measured. That is all a batch
+ * saves: saves are debounced, so registering one by one also ends in a single write of the layout file.
+ *
+ * @author TT432
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegistrationBenchmark {
+    @Param({"30", "300"})
+    public int elementCount;
+
+    private ResourceLocation[] ids;
+    private FlexHudApi.RelativeRect[] relativeRects;
+    private final FlexHudApi.Layer layer = (rect, guiGraphics, deltaTracker) -> {
+    };
+
+    @Setup
+    public void setup() {
+        relativeRects = HudFixtures.relativeRects(elementCount);
+        ids = new ResourceLocation[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            ids[i] = ResourceLocation.fromNamespaceAndPath("bench", "element_" + i);
+        }
+    }
+
+    @Benchmark
+    public FlexHudApi.Impl oneByOne() {
+        FlexHudApi.Impl impl = new FlexHudApi.Impl();
+        for (int i = 0; i < elementCount; i++) {
+            impl.addElement(new FlexHudApi.HudElement(ids[i], FlexHudApi.ResizeMode.Free, layer, relativeRects[i]));
+        }
+        return impl;
+    }
+
+    @Benchmark
+    public FlexHudApi.Impl batch() {
+        FlexHudApi.Impl impl = new FlexHudApi.Impl();
+        List<FlexHudApi.HudElement> elements = new ArrayList<>(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+            elements.add(new FlexHudApi.HudElement(ids[i], FlexHudApi.ResizeMode.Free, layer, relativeRects[i]));
+        }
+        impl.addElements(elements);
+        return impl;
+    }
+}
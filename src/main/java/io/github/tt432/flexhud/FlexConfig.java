@@ -1,6 +1,7 @@
 package io.github.tt432.flexhud;
 
 import net.minecraft.resources.ResourceLocation;
+import net.neoforged.fml.loading.FMLPaths;
 import net.neoforged.neoforge.common.ModConfigSpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +10,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author TT432
@@ -26,21 +32,84 @@ public class FlexConfig {
         SPEC = builder.build();
     }
 
-    // A list of serialized relative rect entries: "<id>|<anchor>|<offsetX>|<offsetY>|<width>|<height>|<useRelativeSize>"
+    // Legacy list of serialized relative rect entries: "<id>|<anchor>|<offsetX>|<offsetY>|<width>|<height>|<useRelativeSize>"
+    // Migrated into the layout file and cleared on load
     public final ModConfigSpec.ConfigValue<List<? extends String>> relativeRectsRaw;
 
-    // In-memory cache for fast lookup
-    private final Map<String, FlexHudApi.RelativeRect> relativeRects = new HashMap<>();
+    // Ids of HUD elements the user has switched off
+    public final ModConfigSpec.ConfigValue<List<? extends String>> disabledElementsRaw;
+
+    // Conditions under which elements are shown: "<id>=<expression>"
+    public final ModConfigSpec.ConfigValue<List<? extends String>> visibilityConditionsRaw;
+
+    // Layout profile selected by the user, and profiles switched to automatically: "<context>=<profile>"
+    public final ModConfigSpec.ConfigValue<String> activeProfileRaw;
+    public final ModConfigSpec.ConfigValue<List<? extends String>> contextProfilesRaw;
+
+    // Opt-in per-element allocation meter and the bytes per frame an element may allocate before a warning is logged
+    public final ModConfigSpec.BooleanValue allocationMeterRaw;
+    public final ModConfigSpec.LongValue allocationBudgetRaw;
+
+    // Element layouts, stored in their own versioned file and decoded lazily per element
+    private final LayoutStore layouts = new LayoutStore();
+    // In-memory cache for fast lookup, concurrent because the IO thread snapshots it while saving
+    private final Set<String> disabledElements = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> visibilityConditions = new ConcurrentHashMap<>();
+    private volatile String activeProfile = LayoutStore.DEFAULT_PROFILE;
+    private final Map<FlexHudApi.LayoutContext, String> contextProfiles = new ConcurrentHashMap<>();
+    private volatile boolean allocationMeterEnabled = false;
+    private volatile long allocationBudget = 0;
+
+    // Delay between the first unsaved change and the background write, later changes within it are coalesced
+    private static final long SAVE_DEBOUNCE_MS = 500;
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    private final AtomicBoolean layoutsDirty = new AtomicBoolean(false);
+    private final AtomicBoolean specDirty = new AtomicBoolean(false);
+    private final Object writeLock = new Object();
 
     // Constructor for ModConfigSpec.Builder#configure
     private FlexConfig(ModConfigSpec.Builder builder) {
         builder.push("hud");
         relativeRectsRaw = builder
             .comment(
-                "List of HUD element relative rectangles",
+                "Legacy list of HUD element relative rectangles, moved to " + LayoutStore.FILE_NAME + " on load",
                 "Each entry format: <namespace:path>|<anchor>|<offsetX>|<offsetY>|<width>|<height>|<useRelativeSize>")
             .translation("flexhud.config.hud.relative_rects")
             .defineListAllowEmpty("relative_rects", ArrayList::new, o -> o instanceof String);
+        disabledElementsRaw = builder
+            .comment("Ids of HUD elements that are not rendered at all, format: <namespace:path>")
+            .translation("flexhud.config.hud.disabled_elements")
+            .defineListAllowEmpty("disabled_elements", ArrayList::new, o -> o instanceof String);
+        visibilityConditionsRaw = builder
+            .comment(
+                "Conditions under which HUD elements are shown, checked once per tick",
+                "Each entry format: <namespace:path>=<condition>, e.g. flexhud:air_level=underwater || air < 100%",
+                "Conditions: health/food/air/armor compared with <, <=, >, >= to a number or a percentage of the maximum,",
+                "holding <item>, dimension <dimension>, underwater, in_water, in_lava, on_fire, riding, sneaking, sprinting,",
+                "flying, creative, spectator; combined with !, &&, || and parentheses")
+            .translation("flexhud.config.hud.visibility_conditions")
+            .defineListAllowEmpty("visibility_conditions", ArrayList::new, o -> o instanceof String);
+        activeProfileRaw = builder
+            .comment("Layout profile in use, profiles are stored in " + LayoutStore.FILE_NAME)
+            .translation("flexhud.config.hud.active_profile")
+            .define("active_profile", LayoutStore.DEFAULT_PROFILE);
+        contextProfilesRaw = builder
+            .comment(
+                "Layout profiles switched to automatically while in a game context, the first matching context wins",
+                "Each entry format: <context>=<profile>, contexts in order: spectator, riding, creative")
+            .translation("flexhud.config.hud.auto_profiles")
+            .defineListAllowEmpty("auto_profiles", ArrayList::new, o -> o instanceof String);
+        builder.pop();
+
+        builder.push("diagnostics");
+        allocationMeterRaw = builder
+            .comment("Measure the bytes each HUD element allocates per frame on the render thread, costs a little per element")
+            .translation("flexhud.config.diagnostics.allocation_meter")
+            .define("allocation_meter", false);
+        allocationBudgetRaw = builder
+            .comment("Bytes an element may allocate in one frame before a warning is logged while the meter is on, 0 never warns")
+            .translation("flexhud.config.diagnostics.allocation_budget")
+            .defineInRange("allocation_budget", 4096L, 0L, Long.MAX_VALUE);
         builder.pop();
     }
 
@@ -48,10 +117,57 @@ public class FlexConfig {
      * Apply values from SPEC into in-memory map. Call on config load/reload.
      */
     public void applyFromSpec() {
-        relativeRects.clear();
-        
-        // Load relative rectangles
+        // Load relative rectangles once, later changes to the layout file are merged by reloadLayouts
+        if (!layouts.isLoaded()) {
+            layouts.load(FMLPaths.CONFIGDIR.get().resolve(LayoutStore.FILE_NAME));
+        }
+        migrateLegacyEntries();
+
+        // Load disabled elements
+        disabledElements.clear();
+        disabledElements.addAll(disabledElementsRaw.get());
+
+        // Load visibility conditions, compiled when their element registers
+        visibilityConditions.clear();
+        for (String entry : visibilityConditionsRaw.get()) {
+            int separator = entry.indexOf('=');
+            if (separator <= 0 || ResourceLocation.tryParse(entry.substring(0, separator).trim()) == null) {
+                LOGGER.warn("Invalid visibility condition entry: {}", entry);
+                continue;
+            }
+            visibilityConditions.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+        }
+
+        // Load profile selection
+        activeProfile = activeProfileRaw.get();
+        contextProfiles.clear();
+        for (String entry : contextProfilesRaw.get()) {
+            int separator = entry.indexOf('=');
+            FlexHudApi.LayoutContext context = separator > 0
+                    ? FlexHudApi.LayoutContext.byName(entry.substring(0, separator).trim())
+                    : null;
+            if (context == null) {
+                LOGGER.warn("Invalid auto profile entry: {}", entry);
+                continue;
+            }
+            contextProfiles.put(context, entry.substring(separator + 1).trim());
+        }
+
+        // Load diagnostics
+        allocationMeterEnabled = allocationMeterRaw.get();
+        allocationBudget = allocationBudgetRaw.get();
+    }
+
+    /**
+     * Move entries of the old pipe-delimited relative_rects list into the layout file
+     */
+    private void migrateLegacyEntries() {
         List<? extends String> relativeEntries = relativeRectsRaw.get();
+        if (relativeEntries.isEmpty()) {
+            return;
+        }
+
+        int migrated = 0;
         for (String entry : relativeEntries) {
             if (entry == null || entry.isEmpty()) continue;
             String[] parts = entry.split("\\|");
@@ -60,14 +176,24 @@ public class FlexConfig {
                 continue;
             }
             String idStr = parts[0];
-            FlexHudApi.Anchor anchor = parseAnchorSafe(parts[1]);
+            LayoutStore.Profile profile = layouts.profile(LayoutStore.DEFAULT_PROFILE);
+            if (profile.contains(idStr)) {
+                continue; // Already saved in the new format
+            }
+            FlexHudApi.Anchor anchor = FlexHudApi.Anchor.byName(parts[1], FlexHudApi.Anchor.TOP_LEFT);
             float offsetX = parseFloatSafe(parts[2]);
             float offsetY = parseFloatSafe(parts[3]);
             float width = parseFloatSafe(parts[4]);
             float height = parseFloatSafe(parts[5]);
             boolean useRelativeSize = Boolean.parseBoolean(parts[6]);
-            relativeRects.put(idStr, new FlexHudApi.RelativeRect(anchor, offsetX, offsetY, width, height, useRelativeSize));
+            profile.put(idStr, new FlexHudApi.RelativeRect(anchor, offsetX, offsetY, width, height, useRelativeSize));
+            migrated++;
         }
+
+        LOGGER.info("Migrated {} legacy relative rect entries to {}", migrated, LayoutStore.FILE_NAME);
+        layoutsDirty.set(true);
+        specDirty.set(true);
+        scheduleSave();
     }
 
     private float parseFloatSafe(String s) {
@@ -78,55 +204,271 @@ public class FlexConfig {
         }
     }
 
-    private FlexHudApi.Anchor parseAnchorSafe(String s) {
-        try {
-            return FlexHudApi.Anchor.valueOf(s);
-        } catch (Exception ignored) {
-            return FlexHudApi.Anchor.TOP_LEFT; // Default anchor
+    /**
+     * Merge the layout file into memory if someone else modified it since we last read or wrote it.
+     * Cheap enough to poll: a file stat when nothing changed.
+     *
+     * @return the entries that changed, see {@link LayoutStore#reload()}
+     */
+    LayoutStore.Diff reloadLayouts() {
+        if (!layouts.isLoaded() || !layouts.isChangedOnDisk()) {
+            return LayoutStore.Diff.EMPTY;
         }
+        LayoutStore.Diff diff = layouts.reload();
+        if (!diff.isEmpty()) {
+            LOGGER.info("Applied {} changed layout entries from {}", diff.size(), LayoutStore.FILE_NAME);
+        }
+        return diff;
     }
 
     /**
-     * Get relative rectangle configuration for specified ID
+     * Get relative rectangle configuration for specified ID in the active profile
      */
     public FlexHudApi.RelativeRect getRelativeRect(ResourceLocation id) {
-        return relativeRects.get(id.toString());
+        return getRelativeRect(activeProfile, id);
+    }
+
+    /**
+     * Get relative rectangle configuration for specified ID in the given profile, null if the profile has none
+     */
+    public FlexHudApi.RelativeRect getRelativeRect(String profile, ResourceLocation id) {
+        LayoutStore.Profile layout = layouts.profile(profile);
+        return layout != null ? layout.get(id.toString()) : null;
     }
 
     /**
-     * Set relative rectangle configuration for specified ID and persist to SPEC
+     * Set relative rectangle configuration for specified ID in the active profile and persist to the layout file
      */
     public void setRelativeRect(ResourceLocation id, FlexHudApi.RelativeRect relativeRect) {
-        relativeRects.put(id.toString(), relativeRect);
-        save();
+        setRelativeRect(activeProfile, id, relativeRect);
+    }
+
+    /**
+     * Set relative rectangle configuration for specified ID in the given profile, creating the profile if needed
+     */
+    public void setRelativeRect(String profile, ResourceLocation id, FlexHudApi.RelativeRect relativeRect) {
+        layouts.createProfile(profile, null).put(id.toString(), relativeRect);
+        layoutsDirty.set(true);
+        scheduleSave();
+    }
+
+    /**
+     * Set the relative rects of many elements in the given profile, creating the profile if needed, with a single save
+     */
+    public void setRelativeRects(String profile, Map<ResourceLocation, FlexHudApi.RelativeRect> relativeRects) {
+        LayoutStore.Profile layout = layouts.createProfile(profile, null);
+        for (Map.Entry<ResourceLocation, FlexHudApi.RelativeRect> entry : relativeRects.entrySet()) {
+            layout.put(entry.getKey().toString(), entry.getValue());
+        }
+        layoutsDirty.set(true);
+        scheduleSave();
+    }
+
+    /**
+     * Set every rect whose element has no valid entry in the given profile yet, then schedule a single save
+     */
+    public void setMissingRelativeRects(String profile, Map<ResourceLocation, FlexHudApi.RelativeRect> relativeRects) {
+        LayoutStore.Profile layout = layouts.createProfile(profile, null);
+        boolean changed = false;
+        for (Map.Entry<ResourceLocation, FlexHudApi.RelativeRect> entry : relativeRects.entrySet()) {
+            String id = entry.getKey().toString();
+            if (layout.get(id) == null) {
+                layout.put(id, entry.getValue());
+                changed = true;
+            }
+        }
+        if (changed) {
+            layoutsDirty.set(true);
+            scheduleSave();
+        }
     }
 
     /**
-     * Get all relative rectangle configurations
+     * Names of all layout profiles, sorted
+     */
+    public Set<String> getProfileNames() {
+        return layouts.getProfileNames();
+    }
+
+    public boolean hasProfile(String profile) {
+        return layouts.profile(profile) != null;
+    }
+
+    /**
+     * Create a profile starting as a copy of {@code copyFrom}. Does nothing if it already exists.
+     */
+    public void createProfile(String profile, String copyFrom) {
+        if (!hasProfile(profile)) {
+            layouts.createProfile(profile, copyFrom);
+            layoutsDirty.set(true);
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Profile selected by the user, which may be temporarily overridden by an automatic context profile
+     */
+    public String getActiveProfile() {
+        return activeProfile;
+    }
+
+    public void setActiveProfile(String profile) {
+        if (!profile.equals(activeProfile)) {
+            activeProfile = profile;
+            specDirty.set(true);
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Profile switched to automatically in the given context, null if none is configured
+     */
+    public String getContextProfile(FlexHudApi.LayoutContext context) {
+        return contextProfiles.get(context);
+    }
+
+    public void setContextProfile(FlexHudApi.LayoutContext context, String profile) {
+        if (profile == null) {
+            contextProfiles.remove(context);
+        } else {
+            contextProfiles.put(context, profile);
+        }
+        specDirty.set(true);
+        scheduleSave();
+    }
+
+    /**
+     * Whether the user has left the element with specified ID switched on
+     */
+    public boolean isElementEnabled(ResourceLocation id) {
+        return !disabledElements.contains(id.toString());
+    }
+
+    /**
+     * Switch the element with specified ID on or off and persist to SPEC
+     */
+    public void setElementEnabled(ResourceLocation id, boolean enabled) {
+        boolean changed = enabled ? disabledElements.remove(id.toString()) : disabledElements.add(id.toString());
+        if (changed) {
+            specDirty.set(true);
+            scheduleSave();
+        }
+    }
+
+    public boolean isAllocationMeterEnabled() {
+        return allocationMeterEnabled;
+    }
+
+    /**
+     * Bytes per frame above which an element's allocations are logged, 0 to never warn
+     */
+    public long getAllocationBudget() {
+        return allocationBudget;
+    }
+
+    /**
+     * Condition expression of the element with specified ID, null if it is always shown
+     */
+    public String getVisibilityCondition(ResourceLocation id) {
+        return visibilityConditions.get(id.toString());
+    }
+
+    /**
+     * Set or, with null, clear the condition expression of the element with specified ID and persist to SPEC
+     */
+    public void setVisibilityCondition(ResourceLocation id, String condition) {
+        String previous = condition != null
+                ? visibilityConditions.put(id.toString(), condition)
+                : visibilityConditions.remove(id.toString());
+        if (!Objects.equals(previous, condition)) {
+            specDirty.set(true);
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Get all relative rectangle configurations of the active profile, decoding entries of unregistered elements as well
      */
     public Map<String, FlexHudApi.RelativeRect> getAllRelativeRects() {
-        return new HashMap<>(relativeRects);
+        LayoutStore.Profile layout = layouts.profile(activeProfile);
+        return layout != null ? layout.getAll() : new HashMap<>();
     }
 
     /**
-     * Serialize in-memory map to SPEC and save TOML
+     * Schedule the whole in-memory state to be written on the IO thread
      */
     public void save() {
-        // Save relative rectangles
-        List<String> relativeEntries = new ArrayList<>();
-        for (Map.Entry<String, FlexHudApi.RelativeRect> e : relativeRects.entrySet()) {
-            FlexHudApi.RelativeRect r = e.getValue();
-            String line = e.getKey() + "|" + r.getAnchor().name() + "|" + r.getOffsetX() + "|" + r.getOffsetY() + 
-                         "|" + r.getWidth() + "|" + r.getHeight() + "|" + r.isUseRelativeSize();
-            relativeEntries.add(line);
-        }
-        relativeRectsRaw.set(relativeEntries);
-        
-        try {
-            SPEC.save(); // Persist to disk when config is loaded
-        } catch (IllegalStateException ex) {
-            // Save can fail if config not yet loaded; log and continue
-            LOGGER.debug("Config not yet loaded; deferred save: {}", ex.getMessage());
+        layoutsDirty.set(true);
+        specDirty.set(true);
+        scheduleSave();
+    }
+
+    /**
+     * Schedule dirty state to be written on the IO thread.
+     * All changes made within {@link #SAVE_DEBOUNCE_MS} of the first one are persisted by a single write.
+     */
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            FlexHudWorkers.io().schedule(this::flush, SAVE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write pending changes now: layouts to the layout file, everything else to SPEC. Called on shutdown.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            if (!savePending.getAndSet(false)) {
+                return;
+            }
+
+            boolean layoutsSaved = true;
+            if (layoutsDirty.getAndSet(false)) {
+                try {
+                    layouts.write();
+                } catch (Exception ex) {
+                    layoutsSaved = false;
+                    LOGGER.error("Failed to save HUD layouts, retrying", ex);
+                }
+            }
+
+            if (specDirty.getAndSet(false)) {
+                try {
+                    // Legacy entries are only dropped once they are safely in the layout file
+                    if (layoutsSaved) {
+                        relativeRectsRaw.set(new ArrayList<>());
+                    }
+                    disabledElementsRaw.set(new ArrayList<>(disabledElements));
+                    List<String> conditionEntries = new ArrayList<>();
+                    for (Map.Entry<String, String> entry : visibilityConditions.entrySet()) {
+                        conditionEntries.add(entry.getKey() + "=" + entry.getValue());
+                    }
+                    visibilityConditionsRaw.set(conditionEntries);
+                    activeProfileRaw.set(activeProfile);
+                    List<String> contextEntries = new ArrayList<>();
+                    for (FlexHudApi.LayoutContext context : FlexHudApi.LayoutContext.values()) {
+                        String profile = contextProfiles.get(context);
+                        if (profile != null) {
+                            contextEntries.add(context.getSerializedName() + "=" + profile);
+                        }
+                    }
+                    contextProfilesRaw.set(contextEntries);
+                    SPEC.save(); // Persist to disk when config is loaded
+                } catch (IllegalStateException ex) {
+                    // Save can fail if config not yet loaded; log and continue
+                    LOGGER.debug("Config not yet loaded; deferred save: {}", ex.getMessage());
+                } catch (Exception ex) {
+                    LOGGER.error("Failed to save FlexHUD config", ex);
+                }
+            }
+
+            if (!layoutsSaved) {
+                layoutsDirty.set(true);
+                if (!relativeRectsRaw.get().isEmpty()) {
+                    specDirty.set(true); // Clear the migrated legacy entries with the retried write
+                }
+                scheduleSave();
+            }
         }
     }
 
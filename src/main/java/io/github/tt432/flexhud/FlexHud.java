@@ -1,8 +1,11 @@
 package io.github.tt432.flexhud;
 
 import com.mojang.blaze3d.platform.InputConstants;
+import com.mojang.blaze3d.platform.Window;
 import net.minecraft.client.KeyMapping;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.network.chat.Component;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.ModContainer;
@@ -10,14 +13,19 @@ import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.config.ModConfig;
 import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.fml.event.lifecycle.FMLClientSetupEvent;
+import net.neoforged.neoforge.client.event.ClientTickEvent;
 import net.neoforged.neoforge.client.event.RegisterKeyMappingsEvent;
 import net.neoforged.neoforge.client.event.RenderGuiEvent;
 import net.neoforged.neoforge.client.settings.KeyConflictContext;
 import net.neoforged.neoforge.client.settings.KeyModifier;
 import net.neoforged.neoforge.common.NeoForge;
+import net.neoforged.neoforge.event.GameShuttingDownEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * FlexHUD - Flexible HUD System
  *
@@ -37,6 +45,28 @@ public class FlexHud {
             "key.categories.flexhud"
     );
 
+    // Key binding for toggling the layer profiler overlay (Alt + P)
+    public static final KeyMapping TOGGLE_PROFILER_KEY = new KeyMapping(
+            "key.flexhud.toggle_profiler",
+            KeyConflictContext.IN_GAME,
+            KeyModifier.ALT,
+            InputConstants.Type.KEYSYM.getOrCreate(InputConstants.KEY_P),
+            "key.categories.flexhud"
+    );
+
+    // Key binding for switching to the next layout profile (Alt + L)
+    public static final KeyMapping CYCLE_PROFILE_KEY = new KeyMapping(
+            "key.flexhud.cycle_profile",
+            KeyConflictContext.IN_GAME,
+            KeyModifier.ALT,
+            InputConstants.Type.KEYSYM.getOrCreate(InputConstants.KEY_L),
+            "key.categories.flexhud"
+    );
+
+    // Ticks between two checks of the layout file for external edits
+    private static final int LAYOUT_POLL_TICKS = 20;
+    private int ticksUntilLayoutPoll = LAYOUT_POLL_TICKS;
+
     public FlexHud(IEventBus modEventBus, ModContainer modContainer) {
         // Register client config (NeoForge ModConfigSpec)
         modContainer.registerConfig(ModConfig.Type.CLIENT, FlexConfig.SPEC);
@@ -54,50 +84,114 @@ public class FlexHud {
 
     private void onRegisterKeyMappings(RegisterKeyMappingsEvent event) {
         event.register(OPEN_CONFIG_KEY);
+        event.register(TOGGLE_PROFILER_KEY);
+        event.register(CYCLE_PROFILE_KEY);
     }
 
     private void onClientSetup(FMLClientSetupEvent event) {
-        // Register GUI render event
+        // Register GUI render events: layouts resolve before the vanilla layers we draw in place, the rest draws after
+        NeoForge.EVENT_BUS.addListener(this::onRenderGuiPre);
         NeoForge.EVENT_BUS.addListener(this::onRenderGui);
 
+        // Prepare tick-time HUD state
+        NeoForge.EVENT_BUS.addListener(this::onClientTick);
+
+        // Write out layout changes still waiting for the debounced save
+        NeoForge.EVENT_BUS.addListener(this::onGameShuttingDown);
+
         // Initialize example HUD elements
         event.enqueueWork(BuiltInFlexHud::initBuiltIn);
     }
 
     private void onConfigLoading(ModConfigEvent.Loading event) {
         if (event.getConfig().getSpec() == FlexConfig.SPEC) {
+            // Fill the config caches right away: the Gui is built before queued client tasks run, and building it
+            // drops disabled vanilla layers in VanillaHudLayers#capture. Nothing renders yet on the first load.
             FlexConfig.INSTANCE.applyFromSpec();
-            LOGGER.info("FlexHUD config loaded and applied");
+            // Config events fire on the config tracker's thread, live elements are only touched on the client thread
+            Minecraft.getInstance().execute(() -> {
+                ((FlexHudApi.Impl) FlexHudApi.INSTANCE).reloadProfiles();
+                ((FlexHudApi.Impl) FlexHudApi.INSTANCE).reloadElementStates();
+                LOGGER.info("FlexHUD config loaded and applied");
+            });
         }
     }
 
     private void onConfigReloading(ModConfigEvent.Reloading event) {
         if (event.getConfig().getSpec() == FlexConfig.SPEC) {
-            FlexConfig.INSTANCE.applyFromSpec();
-            LOGGER.info("FlexHUD config reloaded and applied");
+            // Fired by the file watcher thread, hand the reload to the client thread like the layout poll
+            Minecraft.getInstance().execute(() -> {
+                // Only what changed reaches live elements, the rest of the HUD keeps its resolved layouts
+                FlexConfig.INSTANCE.applyFromSpec();
+                FlexHudApi.Impl impl = (FlexHudApi.Impl) FlexHudApi.INSTANCE;
+                impl.applyLayoutDiff(FlexConfig.INSTANCE.reloadLayouts());
+                impl.reloadElementStates();
+                LOGGER.info("FlexHUD config reloaded and applied");
+            });
         }
     }
 
+    private void onGameShuttingDown(GameShuttingDownEvent event) {
+        FlexConfig.INSTANCE.flush();
+    }
+
+    private void onClientTick(ClientTickEvent.Post event) {
+        // The layout file is not watched by NeoForge, poll it so hand edits and synced layouts apply in game
+        if (--ticksUntilLayoutPoll <= 0) {
+            ticksUntilLayoutPoll = LAYOUT_POLL_TICKS;
+            ((FlexHudApi.Impl) FlexHudApi.INSTANCE).applyLayoutDiff(FlexConfig.INSTANCE.reloadLayouts());
+        }
+
+        LocalPlayer player = Minecraft.getInstance().player;
+        if (player != null) {
+            FlexHudApi.Impl impl = (FlexHudApi.Impl) FlexHudApi.INSTANCE;
+            while (CYCLE_PROFILE_KEY.consumeClick()) {
+                cycleProfile(impl, player);
+            }
+            impl.updateLayoutContext(player);
+            impl.updateVisibility(player);
+            impl.prepareElements();
+        }
+    }
+
+    private void cycleProfile(FlexHudApi.Impl impl, LocalPlayer player) {
+        List<String> profiles = new ArrayList<>(impl.getProfiles());
+        String next = profiles.get((profiles.indexOf(impl.getActiveProfile()) + 1) % profiles.size());
+        impl.switchProfile(next);
+        player.displayClientMessage(Component.translatable("message.flexhud.profile", next), true);
+    }
+
+    private void onRenderGuiPre(RenderGuiEvent.Pre event) {
+        Window window = Minecraft.getInstance().getWindow();
+        ((FlexHudApi.Impl) FlexHudApi.INSTANCE).updateScreenDimensions(
+                window.getGuiScaledWidth(), window.getGuiScaledHeight(), window.getGuiScale());
+    }
+
     private void onRenderGui(RenderGuiEvent.Post event) {
         if (OPEN_CONFIG_KEY.isDown()) {
             Minecraft.getInstance().setScreen(new FlexHudConfigScreen());
         }
 
-        // Don't render HUD elements when config screen is open
-        if (Minecraft.getInstance().screen instanceof FlexHudConfigScreen) {
+        // Don't render HUD elements when config screen is open, or when the HUD is hidden (F1) like the vanilla layers we draw
+        Minecraft minecraft = Minecraft.getInstance();
+        if (minecraft.screen instanceof FlexHudConfigScreen || minecraft.options.hideGui) {
             return;
         }
 
         // Render all registered HUD elements
         FlexHudApi.Impl impl = (FlexHudApi.Impl) FlexHudApi.INSTANCE;
 
-        // Update screen dimensions for relative positioned elements
-        impl.updateScreenDimensions();
+        while (TOGGLE_PROFILER_KEY.consumeClick()) {
+            impl.setProfilingEnabled(!impl.isProfilingEnabled());
+        }
 
-        for (FlexHudApi.HudElement element : impl.getRegisteredElements().values()) {
-            if (element.layer != null) {
-                element.layer.render(element.rect, event.getGuiGraphics(), event.getPartialTick());
-            }
+        // Update screen dimensions for relative positioned elements, then draw them
+        Window window = minecraft.getWindow();
+        impl.renderHud(event.getGuiGraphics(), event.getPartialTick(),
+                window.getGuiScaledWidth(), window.getGuiScaledHeight(), window.getGuiScale());
+
+        if (impl.isProfilingEnabled()) {
+            LayerProfilerOverlay.render(event.getGuiGraphics(), impl);
         }
     }
 }
@@ -1,16 +1,36 @@
 package io.github.tt432.flexhud;
 
+import com.mojang.blaze3d.platform.Window;
+import com.mojang.blaze3d.vertex.PoseStack;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
 import net.minecraft.client.DeltaTracker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.LayeredDraw;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.player.Player;
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public interface FlexHudApi {
     FlexHudApi INSTANCE = new Impl();
@@ -20,64 +40,1056 @@ public interface FlexHudApi {
     
     @Getter
     final class Impl implements FlexHudApi {
+        // Back to front: lower priority is drawn first, equal priorities keep registration order
+        private static final Comparator<HudElement> RENDER_ORDER =
+                Comparator.<HudElement>comparingInt(e -> e.priority).thenComparingInt(e -> e.sequence);
+        // Resolved layouts kept across resizes, enough for a few profiles at a few window sizes and GUI scales
+        private static final int LAYOUT_CACHE_SIZE = 16;
+
         private final Map<ResourceLocation, HudElement> registeredElements = new ConcurrentHashMap<>();
         private final FlexConfig config = FlexConfig.INSTANCE;
 
-        @Override
-        public void register(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer) {
-            // Get saved relative rectangle from config, use default if not found
-            RelativeRect relativeRect = config.getRelativeRect(id);
-            if (relativeRect == null) {
-                relativeRect = defaultRelativeRect;
-                config.setRelativeRect(id, relativeRect);
-            }
-            
-            // Convert relative rect to absolute using current screen dimensions
-            Minecraft minecraft = Minecraft.getInstance();
-            int screenWidth = minecraft.getWindow().getGuiScaledWidth();
-            int screenHeight = minecraft.getWindow().getGuiScaledHeight();
-            Rect rect = relativeRect.toAbsolute(screenWidth, screenHeight);
-            
-            HudElement element = new HudElement(id, resizeMode, rect, layer, relativeRect);
-            registeredElements.put(id, element);
+        // Elements sorted by RENDER_ORDER, replaced as a whole on every registration. Never modify the array.
+        private volatile HudElement[] renderOrder = new HudElement[0];
+        // Elements indexed by HudElement#slot, for spatial index lookups. Same publication rules as renderOrder.
+        @Getter(AccessLevel.NONE)
+        private volatile HudElement[] elementsBySlot = new HudElement[0];
+        // Guards registration and the config/diagnostics state it touches, renderOrder readers never lock
+        @Getter(AccessLevel.NONE)
+        private final Object registrationLock = new Object();
+        @Getter(AccessLevel.NONE)
+        private int registrationSequence = 0;
+        @Getter(AccessLevel.NONE)
+        private int nextSlot = 0;
+
+        // Resolved layout of every profile for the current screen, replaced as a whole on resize or profile changes
+        @Getter(AccessLevel.NONE)
+        private volatile Map<String, ResolvedLayout> profileLayouts;
+        // Layouts of recently seen screen metrics, returning to one reuses its rects and transforms
+        @Getter(AccessLevel.NONE)
+        private final LayoutCache layoutCache = new LayoutCache(LAYOUT_CACHE_SIZE);
+        // Layout currently rendered, switching profiles only replaces this reference
+        @Getter(AccessLevel.NONE)
+        volatile ResolvedLayout activeLayout;
+        // Profile chosen by the user, an automatic context profile overrides it while its context lasts
+        private volatile String selectedProfile = LayoutStore.DEFAULT_PROFILE;
+        // Context whose profile was last applied, null outside of any configured context
+        private volatile LayoutContext layoutContext = null;
+
+        // Screen metrics the current layouts were resolved against
+        private int screenWidth = -1;
+        private int screenHeight = -1;
+        private double guiScale = -1;
+        // Set when any element was marked dirty since the last layout pass
+        private volatile boolean layoutDirty = false;
+        // Committed layout edits per profile, swapped into the layouts by the next layout pass. Guarded by registrationLock.
+        @Getter(AccessLevel.NONE)
+        private final Map<String, Map<ResourceLocation, RelativeRect>> pendingEdits = new HashMap<>();
+        // Measure every layer render with System.nanoTime
+        private volatile boolean profilingEnabled = false;
+        // Whether the current frame measures allocations, follows FlexConfig#isAllocationMeterEnabled. Render thread only.
+        @Getter(AccessLevel.NONE)
+        private boolean allocationMetering = false;
+        // Bytes allocated by whole HUD passes while the allocation meter is on
+        @Getter(AccessLevel.NONE)
+        private final LayerAllocations passAllocations = new LayerAllocations();
+        // Diagnostics: elements skipped by the render loop
+        private volatile int disabledCount = 0;
+
+        public Impl() {
+            activeLayout = new ResolvedLayout(LayoutStore.DEFAULT_PROFILE, screenWidth, screenHeight, guiScale, this::slotOf);
+            profileLayouts = Map.of(activeLayout.profile, activeLayout);
+        }
+
+        @Override
+        public void register(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer, int priority) {
+            registration().add(id, resizeMode, defaultRelativeRect, layer, priority).commit();
+        }
+
+        @Override
+        public Registration registration() {
+            return new Registration(this);
+        }
+
+        @Override
+        public LayoutTransaction editLayout() {
+            return new LayoutTransaction(this, activeLayout.profile);
+        }
+
+        /**
+         * Apply a layout transaction: validate all of it, stage it in every layout of the profile,
+         * re-resolve once and save with one write
+         */
+        void commitLayoutEdit(String profile, Map<ResourceLocation, RelativeRect> edits) {
+            if (edits.isEmpty()) {
+                return;
+            }
+            synchronized (registrationLock) {
+                ResolvedLayout base = profileLayouts.get(profile);
+                if (base == null) {
+                    throw new IllegalStateException("Profile " + profile + " no longer exists");
+                }
+
+                // Validate every edit before touching anything; parents edited in the same transaction take precedence,
+                // then the ones committed earlier that the render pass has not picked up yet
+                Map<ResourceLocation, ResourceLocation> parents = new HashMap<>();
+                Map<ResourceLocation, RelativeRect> pending = pendingEdits.get(profile);
+                if (pending != null) {
+                    pending.forEach((id, relativeRect) -> parents.put(id, relativeRect.getParent()));
+                }
+                for (Map.Entry<ResourceLocation, RelativeRect> edit : edits.entrySet()) {
+                    RelativeRect relativeRect = edit.getValue();
+                    if (!registeredElements.containsKey(edit.getKey())) {
+                        throw new IllegalArgumentException(edit.getKey() + " is not registered");
+                    }
+                    if (relativeRect == null || !relativeRect.isFinite()) {
+                        throw new IllegalArgumentException("Invalid rect for " + edit.getKey() + ": " + relativeRect);
+                    }
+                    parents.put(edit.getKey(), relativeRect.getParent());
+                }
+                for (Map.Entry<ResourceLocation, RelativeRect> edit : edits.entrySet()) {
+                    if (base.wouldCycle(edit.getKey(), edit.getValue().getParent(), parents)) {
+                        throw new IllegalArgumentException("Anchoring " + edit.getKey() + " to "
+                                + edit.getValue().getParent() + " makes it depend on itself");
+                    }
+                }
+
+                // Staged rather than written into the layouts: the render pass swaps them in under this lock,
+                // so a frame resolves every edit of the transaction or none of them
+                pendingEdits.computeIfAbsent(profile, key -> new HashMap<>()).putAll(edits);
+                layoutDirty = true;
+            }
+            config.setRelativeRects(profile, edits);
+        }
+
+        /**
+         * Register a batch: validate all of it, hand the new defaults to the config in one call, then publish once
+         */
+        void commit(List<Registration.Entry> entries) {
+            synchronized (registrationLock) {
+                // Parents within the batch are not registered yet, include them in the cycle check
+                Map<ResourceLocation, ResourceLocation> batchParents = new HashMap<>();
+                for (Registration.Entry entry : entries) {
+                    batchParents.put(entry.id(), entry.defaultRelativeRect().getParent());
+                }
+                for (Registration.Entry entry : entries) {
+                    if (activeLayout.wouldCycle(entry.id(), entry.defaultRelativeRect().getParent(), batchParents)) {
+                        throw new IllegalArgumentException("Anchoring " + entry.id() + " to "
+                                + entry.defaultRelativeRect().getParent() + " makes it depend on itself");
+                    }
+                }
+
+                // Save the defaults so they show up in the layout file, other profiles fall back to them
+                Map<ResourceLocation, RelativeRect> defaults = new HashMap<>();
+                List<HudElement> elements = new ArrayList<>(entries.size());
+                for (Registration.Entry entry : entries) {
+                    defaults.put(entry.id(), entry.defaultRelativeRect());
+                    HudElement element = new HudElement(entry.id(), entry.resizeMode(), entry.layer(),
+                            entry.defaultRelativeRect(), entry.priority());
+                    if (entry.layer() instanceof ScaledLayer scaledLayer) {
+                        scaledLayer.element = element;
+                    } else if (entry.layer() instanceof LazyLayer lazyLayer) {
+                        lazyLayer.element = element;
+                    }
+                    element.enabled = config.isElementEnabled(entry.id());
+                    element.visibility = compileCondition(entry.id());
+                    elements.add(element);
+                }
+                config.setMissingRelativeRects(LayoutStore.DEFAULT_PROFILE, defaults);
+                addElements(elements);
+            }
+        }
+
+        /**
+         * Add an element to every profile and publish the new render order.
+         * Its rects are resolved by the next layout pass on the render thread.
+         */
+        void addElement(HudElement element) {
+            addElements(List.of(element));
+        }
+
+        /**
+         * Add elements to every profile and publish the new render order once for all of them
+         */
+        void addElements(List<HudElement> elements) {
+            synchronized (registrationLock) {
+                int[] slots = new int[elements.size()];
+                int maxSlot = elementsBySlot.length - 1;
+                for (int i = 0; i < slots.length; i++) {
+                    HudElement element = elements.get(i);
+                    element.owner = this;
+                    element.sequence = registrationSequence++;
+                    HudElement previous = registeredElements.put(element.id, element);
+                    // Registering an id again takes over its slot
+                    element.slot = previous != null ? previous.slot : nextSlot++;
+                    slots[i] = element.slot;
+                    maxSlot = Math.max(maxSlot, element.slot);
+                }
+
+                for (ResolvedLayout layout : allLayouts()) {
+                    ResolvedLayout.ElementLayout[] elementLayouts = new ResolvedLayout.ElementLayout[slots.length];
+                    for (int i = 0; i < slots.length; i++) {
+                        elementLayouts[i] = createElementLayout(layout.profile, elements.get(i));
+                    }
+                    layout.setAll(slots, elementLayouts);
+                }
+                HudElement[] bySlot = Arrays.copyOf(elementsBySlot, maxSlot + 1);
+                for (HudElement element : elements) {
+                    bySlot[element.slot] = element;
+                }
+                elementsBySlot = bySlot;
+
+                HudElement[] sorted = registeredElements.values().toArray(new HudElement[0]);
+                Arrays.sort(sorted, RENDER_ORDER);
+                renderOrder = sorted;
+                updateDisabledCount();
+                layoutDirty = true;
+            }
+        }
+
+        /**
+         * Slot of a registered element, -1 if the id is not registered
+         */
+        private int slotOf(ResourceLocation id) {
+            HudElement element = registeredElements.get(id);
+            return element != null ? element.slot : -1;
+        }
+
+        private ResolvedLayout.ElementLayout createElementLayout(String profile, HudElement element) {
+            return new ResolvedLayout.ElementLayout(relativeRectFor(profile, element), element.defaultRelativeRect);
+        }
+
+        private RelativeRect relativeRectFor(String profile, HudElement element) {
+            // Profiles without an entry of their own fall back to the default profile, then to the registered default
+            RelativeRect relativeRect = config.getRelativeRect(profile, element.id);
+            if (relativeRect == null) {
+                relativeRect = config.getRelativeRect(LayoutStore.DEFAULT_PROFILE, element.id);
+            }
+            return relativeRect != null ? relativeRect : element.defaultRelativeRect;
+        }
+
+        /**
+         * Layout of a profile for the current screen metrics, taken from the cache or built and resolved up front.
+         * Must hold the registration lock.
+         */
+        private ResolvedLayout layoutFor(String profile) {
+            ResolvedLayout layout = layoutCache.get(new LayoutCache.Key(profile, screenWidth, screenHeight, guiScale));
+            if (layout != null) {
+                return layout;
+            }
+
+            layout = new ResolvedLayout(profile, screenWidth, screenHeight, guiScale, this::slotOf);
+            for (HudElement element : registeredElements.values()) {
+                layout.set(element.slot, createElementLayout(profile, element));
+            }
+            if (screenWidth >= 0) {
+                layout.update();
+                layoutCache.put(layout);
+            }
+            return layout;
+        }
+
+        /**
+         * Live and cached layouts of every profile
+         */
+        private Set<ResolvedLayout> allLayouts() {
+            Set<ResolvedLayout> layouts = Collections.newSetFromMap(new IdentityHashMap<>());
+            layouts.addAll(profileLayouts.values());
+            layoutCache.addAllTo(layouts);
+            return layouts;
+        }
+
+        /**
+         * Rebuild the layouts of all profiles from config, called after the config is loaded or reloaded
+         */
+        public void reloadProfiles() {
+            synchronized (registrationLock) {
+                layoutCache.clear();
+                Map<String, ResolvedLayout> layouts = new HashMap<>();
+                for (String profile : config.getProfileNames()) {
+                    layouts.put(profile, layoutFor(profile));
+                }
+                profileLayouts = Map.copyOf(layouts);
+
+                selectedProfile = layouts.containsKey(config.getActiveProfile())
+                        ? config.getActiveProfile()
+                        : LayoutStore.DEFAULT_PROFILE;
+                layoutContext = null; // Let the next tick re-apply the context profile
+                activeLayout = layouts.get(selectedProfile);
+                layoutDirty = true;
+            }
+        }
+
+        /**
+         * Push layout entries merged from an edited layout file into live elements.
+         * Only the changed elements, and the elements anchored to them, are re-resolved in the layouts they belong to.
+         * Profiles appearing or disappearing rebuild all layouts like {@link #reloadProfiles()}.
+         */
+        void applyLayoutDiff(LayoutStore.Diff diff) {
+            if (diff.isEmpty()) {
+                return;
+            }
+            synchronized (registrationLock) {
+                if (diff.profilesChanged()) {
+                    reloadProfiles();
+                    return;
+                }
+                // Entries of the default profile also apply to profiles that have none of their own
+                Set<String> defaults = diff.changedIds().getOrDefault(LayoutStore.DEFAULT_PROFILE, Set.of());
+                for (ResolvedLayout layout : allLayouts()) {
+                    applyLayoutChanges(layout, diff.changedIds().getOrDefault(layout.profile, Set.of()));
+                    if (!layout.profile.equals(LayoutStore.DEFAULT_PROFILE)) {
+                        applyLayoutChanges(layout, defaults);
+                    }
+                }
+                layoutDirty = true;
+            }
+        }
+
+        private void applyLayoutChanges(ResolvedLayout layout, Set<String> ids) {
+            for (String id : ids) {
+                ResourceLocation location = ResourceLocation.tryParse(id);
+                HudElement element = location != null ? registeredElements.get(location) : null;
+                ResolvedLayout.ElementLayout elementLayout = element != null ? layout.get(element.slot) : null;
+                if (elementLayout != null) {
+                    RelativeRect relativeRect = relativeRectFor(layout.profile, element);
+                    if (!relativeRect.equals(elementLayout.relativeRect)) {
+                        layout.setRelativeRect(element.slot, relativeRect);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Set<String> getProfiles() {
+            return config.getProfileNames();
+        }
+
+        @Override
+        public String getActiveProfile() {
+            return activeLayout.profile;
+        }
+
+        @Override
+        public boolean switchProfile(String profile) {
+            synchronized (registrationLock) {
+                ResolvedLayout layout = profileLayouts.get(profile);
+                if (layout == null) {
+                    return false;
+                }
+                activeLayout = layout;
+                selectedProfile = profile;
+                config.setActiveProfile(profile);
+                return true;
+            }
+        }
+
+        @Override
+        public boolean createProfile(String profile) {
+            synchronized (registrationLock) {
+                if (profileLayouts.containsKey(profile)) {
+                    return false;
+                }
+                config.createProfile(profile, activeLayout.profile);
+                Map<String, ResolvedLayout> layouts = new HashMap<>(profileLayouts);
+                layouts.put(profile, layoutFor(profile));
+                profileLayouts = Map.copyOf(layouts);
+                return true;
+            }
+        }
+
+        /**
+         * Apply the profile of the first configured context the player is in, or return to the selected profile.
+         * Called once per client tick; only acts when the context changes, so a manual switch sticks until then.
+         */
+        public void updateLayoutContext(Player player) {
+            LayoutContext matched = null;
+            for (LayoutContext context : LayoutContext.VALUES) {
+                if (config.getContextProfile(context) != null && context.test(player)) {
+                    matched = context;
+                    break;
+                }
+            }
+            if (matched == layoutContext) {
+                return;
+            }
+
+            synchronized (registrationLock) {
+                layoutContext = matched;
+                Map<String, ResolvedLayout> layouts = profileLayouts;
+                ResolvedLayout layout = matched != null ? layouts.get(config.getContextProfile(matched)) : null;
+                if (layout == null) {
+                    layout = layouts.getOrDefault(selectedProfile, activeLayout);
+                }
+                activeLayout = layout;
+            }
+        }
+
+        /**
+         * Update HUD element relative rectangle in the active profile, a transaction of one edit.
+         * Only the element and the elements anchored to it, directly or through others, are re-resolved.
+         * Does nothing if the element is not registered.
+         *
+         * @throws IllegalArgumentException if the new parent is anchored to this element
+         */
+        public void updateElementRelativeRect(ResourceLocation id, RelativeRect newRelativeRect) {
+            if (registeredElements.containsKey(id)) {
+                editLayout().set(id, newRelativeRect).commit();
+            }
+        }
+
+        /**
+         * Switch a HUD element on or off. Disabled elements are neither prepared nor rendered.
+         */
+        public void setElementEnabled(ResourceLocation id, boolean enabled) {
+            synchronized (registrationLock) {
+                HudElement element = registeredElements.get(id);
+                if (element != null) {
+                    element.enabled = enabled;
+                    updateDisabledCount();
+                }
+                config.setElementEnabled(id, enabled);
+            }
+        }
+
+        /**
+         * Set the condition under which an element is shown, blank or null to always show it, and persist it.
+         * Applies from the next client tick.
+         *
+         * @throws IllegalArgumentException if the expression does not compile, see {@link VisibilityCondition}
+         */
+        public void setVisibilityCondition(ResourceLocation id, String expression) {
+            VisibilityCondition condition = expression == null || expression.isBlank()
+                    ? null
+                    : VisibilityCondition.parse(expression);
+            synchronized (registrationLock) {
+                HudElement element = registeredElements.get(id);
+                if (element != null) {
+                    element.visibility = condition;
+                    if (condition == null) {
+                        element.conditionMet = true;
+                    }
+                }
+                config.setVisibilityCondition(id, condition != null ? condition.getSource() : null);
+            }
+        }
+
+        /**
+         * Condition expression of an element, null if it is always shown
+         */
+        public String getVisibilityCondition(ResourceLocation id) {
+            HudElement element = registeredElements.get(id);
+            VisibilityCondition condition = element != null ? element.visibility : null;
+            return condition != null ? condition.getSource() : null;
+        }
+
+        /**
+         * Push the enabled states, visibility conditions and selected profile of a loaded or reloaded config
+         * into live elements. Only conditions whose expression changed are recompiled.
+         */
+        public void reloadElementStates() {
+            synchronized (registrationLock) {
+                for (HudElement element : registeredElements.values()) {
+                    element.enabled = config.isElementEnabled(element.id);
+                    VisibilityCondition current = element.visibility;
+                    String expression = config.getVisibilityCondition(element.id);
+                    if (!Objects.equals(current != null ? current.getSource() : null, expression)) {
+                        element.visibility = compileCondition(element.id);
+                        element.conditionMet = true;
+                    }
+                }
+                updateDisabledCount();
+
+                String profile = config.getActiveProfile();
+                if (!profile.equals(selectedProfile) && profileLayouts.containsKey(profile)) {
+                    selectedProfile = profile;
+                    layoutContext = null; // Let the next tick re-apply the context profile
+                    activeLayout = profileLayouts.get(profile);
+                }
+            }
+        }
+
+        private VisibilityCondition compileCondition(ResourceLocation id) {
+            String expression = config.getVisibilityCondition(id);
+            if (expression == null || expression.isBlank()) {
+                return null;
+            }
+            try {
+                return VisibilityCondition.parse(expression);
+            } catch (IllegalArgumentException e) {
+                FlexHud.LOGGER.warn("Ignoring visibility condition of {}: {}", id, e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Evaluate every element's visibility condition for this tick, the render loop only reads the result
+         */
+        public void updateVisibility(Player player) {
+            for (HudElement element : renderOrder) {
+                VisibilityCondition condition = element.visibility;
+                element.conditionMet = condition == null || condition.test(player);
+            }
+        }
+
+        private void updateDisabledCount() {
+            int disabled = 0;
+            for (HudElement element : renderOrder) {
+                if (!element.enabled) {
+                    disabled++;
+                }
+            }
+            disabledCount = disabled;
+        }
+
+        /**
+         * Mark element so its absolute rects in every profile and screen size are re-resolved when next used
+         */
+        public void markDirty(HudElement element) {
+            synchronized (registrationLock) {
+                for (ResolvedLayout layout : allLayouts()) {
+                    layout.markDirty(element.slot);
+                }
+                layoutDirty = true;
+            }
+        }
+
+        /**
+         * Elements of the active profile skipped by the render loop because their rect is empty or off-screen
+         */
+        public int getCulledCount() {
+            return activeLayout.getCulledCount();
+        }
+
+        /**
+         * Update screen dimensions and recalculate relative positions
+         */
+        public void updateScreenDimensions() {
+            Window window = Minecraft.getInstance().getWindow();
+            updateScreenDimensions(window.getGuiScaledWidth(), window.getGuiScaledHeight(), window.getGuiScale());
+        }
+
+        /**
+         * Recalculate relative positions of stale elements against the given gui-scaled screen metrics.
+         * Metrics seen recently reuse their cached layouts. Does nothing when neither the metrics nor any element
+         * changed since the last call.
+         */
+        public void updateScreenDimensions(int width, int height, double scale) {
+            if (width != screenWidth || height != screenHeight || scale != guiScale) {
+                synchronized (registrationLock) {
+                    screenWidth = width;
+                    screenHeight = height;
+                    guiScale = scale;
+
+                    Map<String, ResolvedLayout> layouts = new HashMap<>();
+                    for (String profile : profileLayouts.keySet()) {
+                        layouts.put(profile, layoutFor(profile));
+                    }
+                    profileLayouts = Map.copyOf(layouts);
+                    activeLayout = layouts.get(activeLayout.profile);
+                }
+            } else if (!layoutDirty) {
+                return;
+            }
+
+            layoutDirty = false;
+            applyPendingEdits();
+            // Keep inactive profiles resolved as well so that switching to one never has to
+            for (ResolvedLayout layout : profileLayouts.values()) {
+                if (layout.dirty) {
+                    layout.update();
+                }
+            }
+        }
+
+        /**
+         * Write committed layout edits into every layout of their profile, marking only the edited elements stale
+         */
+        private void applyPendingEdits() {
+            synchronized (registrationLock) {
+                if (pendingEdits.isEmpty()) {
+                    return;
+                }
+                for (ResolvedLayout layout : allLayouts()) {
+                    Map<ResourceLocation, RelativeRect> edits = pendingEdits.get(layout.profile);
+                    if (edits == null) {
+                        continue;
+                    }
+                    for (Map.Entry<ResourceLocation, RelativeRect> edit : edits.entrySet()) {
+                        HudElement element = registeredElements.get(edit.getKey());
+                        if (element != null) {
+                            layout.setRelativeRect(element.slot, edit.getValue());
+                        }
+                    }
+                }
+                pendingEdits.clear();
+            }
+        }
+
+        @Override
+        public List<HudElement> getElementsIn(float x, float y, float width, float height) {
+            ResolvedLayout layout = activeLayout;
+            HudElement[] elements = elementsBySlot;
+            List<HudElement> result = new ArrayList<>();
+            int count = layout.index.query(x, y, width, height);
+            for (int i = 0; i < count; i++) {
+                int slot = layout.index.result(i);
+                HudElement element = slot < elements.length ? elements[slot] : null;
+                ResolvedLayout.ElementLayout elementLayout = layout.get(slot);
+                if (element != null && element.enabled && elementLayout != null
+                        && elementLayout.rect.intersects(x, y, width, height)) {
+                    result.add(element);
+                }
+            }
+            result.sort(RENDER_ORDER);
+            return result;
+        }
+
+        /**
+         * Top-most element whose rect in the active profile contains the point, disabled ones included.
+         * Null if there is none. Call on the render thread.
+         */
+        public HudElement findElementAt(float x, float y) {
+            ResolvedLayout layout = activeLayout;
+            HudElement[] elements = elementsBySlot;
+            HudElement top = null;
+            int count = layout.index.query(x, y, 0, 0);
+            for (int i = 0; i < count; i++) {
+                int slot = layout.index.result(i);
+                HudElement element = slot < elements.length ? elements[slot] : null;
+                ResolvedLayout.ElementLayout elementLayout = layout.get(slot);
+                if (element != null && elementLayout != null && elementLayout.rect.contains(x, y)
+                        && (top == null || RENDER_ORDER.compare(element, top) > 0)) {
+                    top = element;
+                }
+            }
+            return top;
+        }
+
+        /**
+         * One HUD frame as done in {@link FlexHud}: bring the layouts up to date with the gui-scaled screen metrics,
+         * then render every element. Touches no global game state, so it can also be driven headlessly.
+         */
+        public void renderHud(GuiGraphics guiGraphics, DeltaTracker deltaTracker, int width, int height, double scale) {
+            boolean metering = config.isAllocationMeterEnabled() && LayerAllocations.isSupported();
+            if (metering && !allocationMetering) {
+                // Start every session with fresh windows
+                passAllocations.reset();
+                for (HudElement element : renderOrder) {
+                    element.allocations.reset();
+                }
+            }
+            allocationMetering = metering;
+            if (!metering) {
+                applyLegacyRelativeRects();
+                updateScreenDimensions(width, height, scale);
+                syncLegacyFields();
+                renderElements(guiGraphics, deltaTracker);
+                return;
+            }
+
+            long start = LayerAllocations.currentThreadAllocatedBytes();
+            applyLegacyRelativeRects();
+            updateScreenDimensions(width, height, scale);
+            syncLegacyFields();
+            renderElements(guiGraphics, deltaTracker);
+            passAllocations.record(LayerAllocations.currentThreadAllocatedBytes() - start, 0);
+        }
+
+        /**
+         * Commit relative rects assigned to the deprecated {@link HudElement#relativeRect} field since the last frame,
+         * before the layout pass so that they resolve in this frame. Render thread only.
+         */
+        @SuppressWarnings("deprecation")
+        private void applyLegacyRelativeRects() {
+            ResolvedLayout layout = activeLayout;
+            for (HudElement element : renderOrder) {
+                RelativeRect assigned = element.relativeRect;
+                if (assigned != element.mirroredRelativeRect && assigned != null && layout.get(element.slot) != null) {
+                    try {
+                        updateElementRelativeRect(element.id, assigned);
+                    } catch (IllegalArgumentException e) {
+                        FlexHud.LOGGER.warn("Ignoring relative rect assigned to {}: {}", element.id, e.getMessage());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Keep the deprecated {@link HudElement#rect} and {@link HudElement#relativeRect} fields pointing at the active
+         * profile. Render thread only.
+         */
+        @SuppressWarnings("deprecation")
+        private void syncLegacyFields() {
+            ResolvedLayout layout = activeLayout;
+            for (HudElement element : renderOrder) {
+                ResolvedLayout.ElementLayout elementLayout = layout.get(element.slot);
+                if (elementLayout == null) {
+                    continue;
+                }
+                element.rect = elementLayout.rect;
+                element.relativeRect = element.mirroredRelativeRect = elementLayout.relativeRect;
+            }
+        }
+
+        /**
+         * Render all registered elements into their resolved rects
+         */
+        public void renderElements(GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            if (profilingEnabled || allocationMetering) {
+                renderElementsProfiled(guiGraphics, deltaTracker);
+                return;
+            }
+
+            ResolvedLayout layout = activeLayout;
+            for (HudElement element : renderOrder) {
+                ResolvedLayout.ElementLayout elementLayout = layout.get(element.slot);
+                if (!element.drawnInPlace && element.isVisible(elementLayout)) {
+                    element.render(elementLayout, guiGraphics, deltaTracker);
+                }
+            }
+        }
+
+        /**
+         * Render loop measuring render times, allocated bytes or both, whichever is switched on
+         */
+        private void renderElementsProfiled(GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            boolean timing = profilingEnabled;
+            boolean metering = allocationMetering;
+            long budget = config.getAllocationBudget();
+            ResolvedLayout layout = activeLayout;
+            for (HudElement element : renderOrder) {
+                ResolvedLayout.ElementLayout elementLayout = layout.get(element.slot);
+                if (!element.drawnInPlace && element.isVisible(elementLayout)) {
+                    renderMeasured(element, elementLayout, guiGraphics, deltaTracker, timing, metering, budget);
+                }
+            }
+        }
+
+        private void renderMeasured(HudElement element, ResolvedLayout.ElementLayout elementLayout, GuiGraphics guiGraphics,
+                                    DeltaTracker deltaTracker, boolean timing, boolean metering, long budget) {
+            long startBytes = metering ? LayerAllocations.currentThreadAllocatedBytes() : 0;
+            long start = System.nanoTime();
+            element.render(elementLayout, guiGraphics, deltaTracker);
+            if (timing) {
+                element.timings.record(System.nanoTime() - start);
+            }
+            if (metering) {
+                long bytes = LayerAllocations.currentThreadAllocatedBytes() - startBytes;
+                if (element.allocations.record(bytes, budget)) {
+                    FlexHud.LOGGER.warn("HUD element {} allocated {} bytes in one frame, over the budget of {} bytes",
+                            element.id, bytes, budget);
+                }
+            }
+        }
+
+        /**
+         * Draw one element from the slot it holds in the GuiLayerManager, so it keeps the vanilla z-order.
+         * Uses the layout resolved at the start of the GUI pass. Render thread only.
+         */
+        public void renderInPlace(ResourceLocation id, GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            HudElement element = registeredElements.get(id);
+            if (element == null) {
+                return;
+            }
+            ResolvedLayout.ElementLayout elementLayout = activeLayout.get(element.slot);
+            if (!element.isVisible(elementLayout)) {
+                return;
+            }
+            if (profilingEnabled || allocationMetering) {
+                renderMeasured(element, elementLayout, guiGraphics, deltaTracker, profilingEnabled, allocationMetering,
+                        config.getAllocationBudget());
+            } else {
+                element.render(elementLayout, guiGraphics, deltaTracker);
+            }
+        }
+
+        /**
+         * Refresh the snapshots of all {@link PreparedLayer}s and release idle {@link LazyLayer}s, called once per client tick.
+         * Concurrent layers are prepared on the worker pool; one still running from an earlier tick is not resubmitted.
+         */
+        public void prepareElements() {
+            for (HudElement element : renderOrder) {
+                if (element.layer instanceof LazyLayer lazyLayer) {
+                    lazyLayer.tick();
+                }
+                PreparedLayer<Object> preparedLayer = element.preparedLayer;
+                if (preparedLayer == null || !element.enabled || !element.conditionMet) {
+                    continue;
+                }
+
+                if (!preparedLayer.isConcurrent()) {
+                    element.prepare();
+                } else if (element.preparing.compareAndSet(false, true)) {
+                    FlexHudWorkers.prepare().execute(() -> {
+                        try {
+                            element.prepare();
+                        } finally {
+                            element.preparing.set(false);
+                        }
+                    });
+                }
+            }
+        }
+
+        @Override
+        public LayerStats getLayerStats(ResourceLocation id) {
+            HudElement element = registeredElements.get(id);
+            return element != null ? element.timings.stats() : LayerStats.EMPTY;
+        }
+
+        @Override
+        public AllocationStats getAllocationStats(ResourceLocation id) {
+            HudElement element = registeredElements.get(id);
+            return element != null ? element.allocations.stats() : AllocationStats.EMPTY;
+        }
+
+        /**
+         * Bytes allocated per frame by the whole HUD pass, layout update included, while the allocation meter is on
+         */
+        public AllocationStats getPassAllocationStats() {
+            return passAllocations.stats();
+        }
+
+        @Override
+        public boolean isProfilingEnabled() {
+            return profilingEnabled;
+        }
+
+        @Override
+        public void setProfilingEnabled(boolean enabled) {
+            if (enabled && !profilingEnabled) {
+                // Start every session with a fresh window
+                for (HudElement element : renderOrder) {
+                    element.timings.reset();
+                }
+            }
+            profilingEnabled = enabled;
+        }
+    }
+
+    /**
+     * Register HUD element with relative positioning and default priority 0
+     */
+    default void register(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer) {
+        register(id, resizeMode, defaultRelativeRect, layer, 0);
+    }
+
+    /**
+     * Register HUD element with relative positioning. Elements with higher priority are drawn on top.
+     * The default rect may be anchored to another element with {@link RelativeRect#withParent}.
+     * Safe to call from any thread.
+     *
+     * @throws IllegalArgumentException if the parent of the default rect is anchored to this element
+     */
+    void register(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer, int priority);
+
+    /**
+     * Start a batch of registrations that is committed as one: elements anchored to each other may be added in any order,
+     * every profile is updated with one copy of its slots and the render order is sorted and published once.
+     * Prefer it over repeated {@link #register} calls when adding many elements.
+     */
+    Registration registration();
+
+    /**
+     * Start a transaction of rect edits in the active profile: stage any number of changes, then commit them as one.
+     * The whole transaction is validated before anything applies, saved with a single write and handed to the next
+     * render pass together, which re-resolves the edited elements in one pass.
+     * Prefer it over repeated single edits when moving many elements, e.g. when arranging or importing a layout.
+     */
+    LayoutTransaction editLayout();
+
+    /**
+     * Wrap a layer that draws at its default position so it follows the element's current rect.
+     * Uses the element's cached default-to-current transform instead of computing one every frame.
+     */
+    static Layer scaled(LayeredDraw.Layer layer) {
+        return new ScaledLayer(layer);
+    }
+
+    /**
+     * Layer built by {@code factory} the first time the element is rendered, and dropped again after
+     * {@link LazyLayer#RELEASE_AFTER_TICKS} client ticks without a render. Disabled or never visible elements never build it.
+     * The built layer may be a {@link PreparedLayer} or {@link #scaled} one, and is closed on release if it is
+     * {@link AutoCloseable}.
+     */
+    static Layer lazy(Supplier<? extends Layer> factory) {
+        return new LazyLayer(factory);
+    }
+
+    /**
+     * Register HUD element whose layer is only built once it is first rendered, see {@link #lazy}
+     */
+    default void registerLazy(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect,
+                              Supplier<? extends Layer> factory, int priority) {
+        register(id, resizeMode, defaultRelativeRect, lazy(factory), priority);
+    }
+
+    /**
+     * Names of all layout profiles, sorted
+     */
+    Set<String> getProfiles();
+
+    /**
+     * Profile whose layout is currently rendered
+     */
+    String getActiveProfile();
+
+    /**
+     * Switch to a profile and remember it as the user's choice. Only swaps in the profile's precomputed layout.
+     *
+     * @return false if no profile with that name exists
+     */
+    boolean switchProfile(String profile);
+
+    /**
+     * Create a profile that starts as a copy of the active one
+     *
+     * @return false if a profile with that name already exists
+     */
+    boolean createProfile(String profile);
+
+    /**
+     * Enabled elements whose rect in the active profile intersects the region, back to front.
+     * Backed by a grid index, so the cost depends on the elements near the region rather than on all registered ones.
+     * Call on the render thread.
+     */
+    List<HudElement> getElementsIn(float x, float y, float width, float height);
+
+    /**
+     * Rolling frame-time statistics of the element's layer, {@link LayerStats#EMPTY} if unknown or never measured
+     */
+    LayerStats getLayerStats(ResourceLocation id);
+
+    /**
+     * Bytes the element's layer allocated per frame on the render thread, {@link AllocationStats#EMPTY}
+     * if unknown or never measured. Only measured while {@code allocation_meter} is on in the client config.
+     */
+    AllocationStats getAllocationStats(ResourceLocation id);
+
+    boolean isProfilingEnabled();
+
+    /**
+     * Enable per-layer frame-time measurement. Disabled by default, in which case rendering is not timed at all.
+     */
+    void setProfilingEnabled(boolean enabled);
+
+    /**
+     * Batch of element registrations, see {@link #registration()}. Not thread-safe, commit it once.
+     */
+    final class Registration {
+        record Entry(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer,
+                     int priority) {
+        }
+
+        private final Impl owner;
+        private final List<Entry> entries = new ArrayList<>();
+        private boolean committed = false;
+
+        Registration(Impl owner) {
+            this.owner = owner;
         }
 
         /**
-         * Update HUD element relative rectangle
+         * Add an element with default priority 0
          */
-        public void updateElementRelativeRect(ResourceLocation id, RelativeRect newRelativeRect) {
-            HudElement element = registeredElements.get(id);
-            if (element != null) {
-                // Update the relative rect and recalculate absolute position
-                Minecraft minecraft = Minecraft.getInstance();
-                int screenWidth = minecraft.getWindow().getGuiScaledWidth();
-                int screenHeight = minecraft.getWindow().getGuiScaledHeight();
-                element.rect = newRelativeRect.toAbsolute(screenWidth, screenHeight);
-                config.setRelativeRect(id, newRelativeRect);
-            }
+        public Registration add(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer) {
+            return add(id, resizeMode, defaultRelativeRect, layer, 0);
+        }
+
+        public Registration add(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer,
+                                int priority) {
+            entries.add(new Entry(id, resizeMode, defaultRelativeRect, layer, priority));
+            return this;
         }
 
         /**
-         * Update screen dimensions and recalculate relative positions
+         * Register every added element. Nothing is registered if any of them fails validation.
+         *
+         * @throws IllegalArgumentException if an element's default rect is anchored to itself through its parents
+         * @throws IllegalStateException    if this batch was already committed
          */
-        public void updateScreenDimensions() {
-            Minecraft minecraft = Minecraft.getInstance();
-            int screenWidth = minecraft.getWindow().getGuiScaledWidth();
-            int screenHeight = minecraft.getWindow().getGuiScaledHeight();
-
-            for (HudElement element : registeredElements.values()) {
-                if (element.relativeRect != null) {
-                    // Recalculate absolute position from relative position
-                    element.rect = element.relativeRect.toAbsolute(screenWidth, screenHeight);
-                }
+        public void commit() {
+            if (committed) {
+                throw new IllegalStateException("Registration already committed");
             }
+            committed = true;
+            owner.commit(entries);
         }
     }
 
     /**
-     * Register HUD element with relative positioning
+     * Staged rect edits of one profile, see {@link #editLayout()}. Not thread-safe, commit or roll it back once.
      */
-    void register(ResourceLocation id, ResizeMode resizeMode, RelativeRect defaultRelativeRect, Layer layer);
+    final class LayoutTransaction {
+        private final Impl owner;
+        private final String profile;
+        private final Map<ResourceLocation, RelativeRect> staged = new LinkedHashMap<>();
+        private boolean done = false;
+
+        LayoutTransaction(Impl owner, String profile) {
+            this.owner = owner;
+            this.profile = profile;
+        }
+
+        /**
+         * Profile the edits apply to, the active one when the transaction started
+         */
+        public String getProfile() {
+            return profile;
+        }
+
+        /**
+         * Stage a new relative rect for an element, replacing one staged earlier
+         */
+        public LayoutTransaction set(ResourceLocation id, RelativeRect relativeRect) {
+            checkOpen();
+            staged.put(id, relativeRect);
+            return this;
+        }
+
+        /**
+         * Rect staged for an element, null if it is not edited in this transaction
+         */
+        public RelativeRect getStaged(ResourceLocation id) {
+            return staged.get(id);
+        }
+
+        public boolean isEmpty() {
+            return staged.isEmpty();
+        }
+
+        /**
+         * Apply every staged edit. Nothing applies if any of them fails validation,
+         * the transaction then stays open to be corrected or rolled back.
+         *
+         * @throws IllegalArgumentException if an element is not registered, a rect is null or not finite,
+         *                                  or the edits anchor an element to itself through its parents
+         * @throws IllegalStateException    if this transaction was already committed or rolled back
+         */
+        public void commit() {
+            checkOpen();
+            owner.commitLayoutEdit(profile, staged);
+            done = true;
+        }
+
+        /**
+         * Discard every staged edit
+         *
+         * @throws IllegalStateException if this transaction was already committed or rolled back
+         */
+        public void rollback() {
+            checkOpen();
+            staged.clear();
+            done = true;
+        }
+
+        private void checkOpen() {
+            if (done) {
+                throw new IllegalStateException("Layout transaction already finished");
+            }
+        }
+    }
 
     enum ResizeMode {
         Free,      // Free resize width and height
@@ -87,6 +1099,43 @@ public interface FlexHudApi {
         Fixed,     // Completely disable scaling
     }
 
+    /**
+     * Game context that can switch layout profiles automatically, earlier constants take precedence
+     */
+    @Getter
+    enum LayoutContext {
+        SPECTATOR("spectator", Player::isSpectator),
+        RIDING("riding", Entity::isPassenger),
+        CREATIVE("creative", Player::isCreative);
+
+        static final LayoutContext[] VALUES = values();
+
+        private final String serializedName;
+        @Getter(AccessLevel.NONE)
+        private final Predicate<Player> condition;
+
+        LayoutContext(String serializedName, Predicate<Player> condition) {
+            this.serializedName = serializedName;
+            this.condition = condition;
+        }
+
+        public boolean test(Player player) {
+            return condition.test(player);
+        }
+
+        /**
+         * Look up a context by its serialized name, null if unknown
+         */
+        public static LayoutContext byName(String name) {
+            for (LayoutContext context : VALUES) {
+                if (context.serializedName.equals(name)) {
+                    return context;
+                }
+            }
+            return null;
+        }
+    }
+
     @Getter
     enum Anchor {
         TOP_LEFT(0.0f, 0.0f),
@@ -106,6 +1155,18 @@ public interface FlexHudApi {
             this.xPercent = xPercent;
             this.yPercent = yPercent;
         }
+
+        /**
+         * Look up an anchor by its constant name without throwing on unknown names
+         */
+        public static Anchor byName(String name, Anchor fallback) {
+            for (Anchor anchor : values()) {
+                if (anchor.name().equals(name)) {
+                    return anchor;
+                }
+            }
+            return fallback;
+        }
     }
 
     @Data
@@ -120,20 +1181,36 @@ public interface FlexHudApi {
             return new Rect(x, y, w, h);
         }
 
+        public boolean contains(float px, float py) {
+            return px >= x && px < x + w && py >= y && py < y + h;
+        }
+
+        /**
+         * Whether this rect overlaps the region, a zero-sized region counts as a point
+         */
+        public boolean intersects(float rx, float ry, float rw, float rh) {
+            return rx < x + w && rx + rw >= x && ry < y + h && ry + rh >= y;
+        }
+
         /**
          * Compute affine transform that maps this rect to the target rect.
          * The transformation is composed as: translate to target, scale by size ratio,
          * then translate by negative source position.
          */
         public Matrix4f transform(Rect to) {
+            return transform(to, new Matrix4f());
+        }
+
+        /**
+         * Compute affine transform that maps this rect to the target rect, writing the result into {@code dest}
+         */
+        public Matrix4f transform(Rect to, Matrix4f dest) {
             float sx = this.w == 0f ? 0f : to.w / this.w;
             float sy = this.h == 0f ? 0f : to.h / this.h;
 
-            Matrix4f m = new Matrix4f();
-            m.translate(to.x, to.y, 0f)
-             .scale(sx, sy, 1f)
-             .translate(-this.x, -this.y, 0f);
-            return m;
+            return dest.translation(to.x, to.y, 0f)
+                    .scale(sx, sy, 1f)
+                    .translate(-this.x, -this.y, 0f);
         }
     }
 
@@ -146,41 +1223,89 @@ public interface FlexHudApi {
         private float width;
         private float height;
         private boolean useRelativeSize;
+        // Element whose rect the anchor and relative size refer to instead of the screen, null for the screen
+        private ResourceLocation parent;
 
         public RelativeRect(Anchor anchor, float offsetX, float offsetY, float width, float height) {
             this(anchor, offsetX, offsetY, width, height, false);
         }
 
+        public RelativeRect(Anchor anchor, float offsetX, float offsetY, float width, float height, boolean useRelativeSize) {
+            this(anchor, offsetX, offsetY, width, height, useRelativeSize, null);
+        }
+
+        /**
+         * Copy of this rect anchored to another element's rect, e.g. {@code BOTTOM_CENTER} with offset y -24
+         * keeps an element's bottom edge 2px above a 22px high hotbar
+         */
+        public RelativeRect withParent(ResourceLocation parent) {
+            return new RelativeRect(anchor, offsetX, offsetY, width, height, useRelativeSize, parent);
+        }
+
+        /**
+         * Whether it has an anchor and all its numbers are finite, so it resolves to a usable rect
+         */
+        public boolean isFinite() {
+            return anchor != null && Float.isFinite(offsetX) && Float.isFinite(offsetY)
+                    && Float.isFinite(width) && Float.isFinite(height);
+        }
+
         /**
          * Convert relative position to absolute Rect based on screen dimensions
          */
         public Rect toAbsolute(int screenWidth, int screenHeight) {
+            return toAbsolute(screenWidth, screenHeight, new Rect(0, 0, 0, 0));
+        }
+
+        /**
+         * Convert relative position to absolute Rect, writing the result into {@code out}
+         */
+        public Rect toAbsolute(int screenWidth, int screenHeight, Rect out) {
+            return toAbsolute(0, 0, screenWidth, screenHeight, out);
+        }
+
+        /**
+         * Convert relative position to absolute Rect inside the given frame, the parent's rect or the screen,
+         * writing the result into {@code out}
+         */
+        public Rect toAbsolute(float frameX, float frameY, float frameWidth, float frameHeight, Rect out) {
             // Calculate anchor position
-            float anchorX = screenWidth * anchor.getXPercent();
-            float anchorY = screenHeight * anchor.getYPercent();
+            float anchorX = frameX + frameWidth * anchor.getXPercent();
+            float anchorY = frameY + frameHeight * anchor.getYPercent();
 
             // Apply offset
             float absoluteX = anchorX + offsetX;
             float absoluteY = anchorY + offsetY;
 
             // Calculate size
-            float absoluteWidth = useRelativeSize ? screenWidth * width : width;
-            float absoluteHeight = useRelativeSize ? screenHeight * height : height;
+            float absoluteWidth = useRelativeSize ? frameWidth * width : width;
+            float absoluteHeight = useRelativeSize ? frameHeight * height : height;
 
             // Adjust position based on element size (anchor point is relative to element)
             absoluteX -= absoluteWidth * anchor.getXPercent();
             absoluteY -= absoluteHeight * anchor.getYPercent();
 
-            return new Rect(absoluteX, absoluteY, absoluteWidth, absoluteHeight);
+            out.x = absoluteX;
+            out.y = absoluteY;
+            out.w = absoluteWidth;
+            out.h = absoluteHeight;
+            return out;
         }
 
         /**
          * Create RelativeRect from absolute Rect based on screen dimensions
          */
         public static RelativeRect fromAbsolute(Rect rect, Anchor anchor, int screenWidth, int screenHeight) {
+            return fromAbsolute(rect, anchor, new Rect(0, 0, screenWidth, screenHeight), null);
+        }
+
+        /**
+         * Create RelativeRect from absolute Rect anchored to {@code parent}, whose current rect is {@code frame}
+         */
+        public static RelativeRect fromAbsolute(Rect rect, Anchor anchor, Rect frame, ResourceLocation parent) {
             // Calculate what the anchor position would be
-            float anchorX = screenWidth * anchor.getXPercent();
-            float anchorY = screenHeight * anchor.getYPercent();
+            float anchorX = frame.getX() + frame.getW() * anchor.getXPercent();
+            float anchorY = frame.getY() + frame.getH() * anchor.getYPercent();
 
             // Calculate element's anchor point
             float elementAnchorX = rect.getX() + rect.getW() * anchor.getXPercent();
@@ -190,26 +1315,338 @@ public interface FlexHudApi {
             float offsetX = elementAnchorX - anchorX;
             float offsetY = elementAnchorY - anchorY;
 
-            return new RelativeRect(anchor, offsetX, offsetY, rect.getW(), rect.getH(), false);
+            return new RelativeRect(anchor, offsetX, offsetY, rect.getW(), rect.getH(), false, parent);
         }
     }
     
     /**
-     * HUD element data class
+     * Layer that gathers its data once per client tick into an immutable snapshot,
+     * which every frame until the next tick renders without recomputing it.
+     */
+    interface PreparedLayer<S> extends Layer {
+        /**
+         * Build the snapshot for the coming frames. Only called while a player exists.
+         * Must not touch the GuiGraphics or rendering state, and must be thread-safe if {@link #isConcurrent()}.
+         */
+        S prepare();
+
+        /**
+         * Render the latest snapshot. Not called until the first snapshot is available.
+         */
+        void render(S state, Rect rect, GuiGraphics guiGraphics, DeltaTracker deltaTracker);
+
+        /**
+         * Whether {@link #prepare()} may run on a FlexHUD worker thread in parallel with other elements
+         */
+        default boolean isConcurrent() {
+            return false;
+        }
+
+        @Override
+        default void render(Rect rect, GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            render(prepare(), rect, guiGraphics, deltaTracker);
+        }
+    }
+
+    /**
+     * HUD element data class. Where it is drawn depends on the active profile.
      */
     class HudElement {
+        private static final Matrix4fc IDENTITY = new Matrix4f();
+
         public final ResourceLocation id;
         public final ResizeMode resizeMode;
-        public Rect rect; // Calculated absolute position for rendering
         public final Layer layer;
-        public RelativeRect relativeRect; // Relative positioning definition
+        public final RelativeRect defaultRelativeRect; // Layout the layer draws at without any transform
+        public final int priority; // Z-order, higher is drawn on top
+        int sequence; // Registration order, breaks priority ties
+        Impl owner; // Set when added, its active layout holds this element's rect
+        int slot = -1; // Index into every ResolvedLayout, kept when the id is registered again
+
+        volatile boolean enabled = true; // Switched on by the user, persisted in FlexConfig
+        volatile VisibilityCondition visibility; // Shown only while it holds, null to always show
+        volatile boolean conditionMet = true; // Result of visibility as of the last client tick
+        volatile boolean drawnInPlace = false; // Drawn by its own slot in the GuiLayerManager, skipped by the FlexHUD pass
+        final LayerTimings timings = new LayerTimings(); // Only written while profiling is enabled
+        final LayerAllocations allocations = new LayerAllocations(); // Only written while the allocation meter is on
+
+        // Tick-time state of a PreparedLayer, null for plain layers
+        final PreparedLayer<Object> preparedLayer;
+        final AtomicBoolean preparing = new AtomicBoolean(false);
+        private volatile Object preparedState;
+
+        /**
+         * Mirror of {@link #getRect()} in the active profile, refreshed by the render pass every frame
+         *
+         * @deprecated rects are kept per profile, use {@link #getRect()}
+         */
+        @Deprecated
+        public Rect rect;
+        /**
+         * Mirror of {@link #getRelativeRect()} in the active profile, refreshed by the render pass every frame.
+         * Assigning it still works: the next frame applies it to the active profile like {@link Impl#updateElementRelativeRect}.
+         *
+         * @deprecated rects are kept per profile, use {@link #getRelativeRect()} and {@link FlexHudApi#editLayout()}
+         */
+        @Deprecated
+        public RelativeRect relativeRect;
+        // Value last mirrored into relativeRect, a different value was assigned by a caller of the old field API
+        RelativeRect mirroredRelativeRect;
 
+        /**
+         * Constructor of the field-based API, the rect is resolved on registration
+         *
+         * @deprecated use {@link #HudElement(ResourceLocation, ResizeMode, Layer, RelativeRect)}
+         */
+        @Deprecated
         public HudElement(ResourceLocation id, ResizeMode resizeMode, Rect rect, Layer layer, RelativeRect relativeRect) {
+            this(id, resizeMode, layer, relativeRect, 0);
+            this.rect = rect;
+            this.relativeRect = relativeRect;
+            this.mirroredRelativeRect = relativeRect;
+        }
+
+        public HudElement(ResourceLocation id, ResizeMode resizeMode, Layer layer, RelativeRect defaultRelativeRect) {
+            this(id, resizeMode, layer, defaultRelativeRect, 0);
+        }
+
+        public HudElement(ResourceLocation id, ResizeMode resizeMode, Layer layer, RelativeRect defaultRelativeRect,
+                          int priority) {
             this.id = id;
             this.resizeMode = resizeMode;
-            this.rect = rect;
             this.layer = layer;
-            this.relativeRect = relativeRect;
+            this.defaultRelativeRect = defaultRelativeRect;
+            this.priority = priority;
+            this.preparedLayer = asPreparedLayer(layer);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static PreparedLayer<Object> asPreparedLayer(Layer layer) {
+            return layer instanceof PreparedLayer<?> prepared ? (PreparedLayer<Object>) prepared : null;
+        }
+
+        /**
+         * Layout of this element in the active profile, null until it is registered
+         */
+        ResolvedLayout.ElementLayout layout() {
+            Impl impl = owner;
+            return impl != null ? impl.activeLayout.get(slot) : null;
+        }
+
+        /**
+         * Calculated absolute position in the active profile, null until the element is registered
+         */
+        public Rect getRect() {
+            ResolvedLayout.ElementLayout layout = layout();
+            return layout != null ? layout.rect : null;
+        }
+
+        /**
+         * Relative positioning definition in the active profile
+         */
+        public RelativeRect getRelativeRect() {
+            ResolvedLayout.ElementLayout layout = layout();
+            return layout != null ? layout.relativeRect : defaultRelativeRect;
+        }
+
+        /**
+         * Transform from the default rect to the current rect, valid until the next resolve
+         */
+        public Matrix4fc getTransform() {
+            ResolvedLayout.ElementLayout layout = layout();
+            return layout != null ? layout.transform : IDENTITY;
+        }
+
+        public TransformKind getTransformKind() {
+            ResolvedLayout.ElementLayout layout = layout();
+            return layout != null ? layout.transformKind : TransformKind.IDENTITY;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public boolean isCulled() {
+            ResolvedLayout.ElementLayout layout = layout();
+            return layout == null || layout.culled;
+        }
+
+        /**
+         * Whether the render loop draws this element: it has a layer, is enabled and is not culled
+         */
+        public boolean isVisible() {
+            return isVisible(layout());
+        }
+
+        boolean isVisible(ResolvedLayout.ElementLayout layout) {
+            return layer != null && enabled && conditionMet && layout != null && !layout.culled;
+        }
+
+        void prepare() {
+            try {
+                preparedState = preparedLayer.prepare();
+            } catch (Exception e) {
+                FlexHud.LOGGER.error("Failed to prepare HUD element {}", id, e);
+            }
+        }
+
+        void render(ResolvedLayout.ElementLayout layout, GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            if (preparedLayer == null) {
+                layer.render(layout.rect, guiGraphics, deltaTracker);
+                return;
+            }
+
+            Object state = preparedState;
+            if (state != null) {
+                preparedLayer.render(state, layout.rect, guiGraphics, deltaTracker);
+            }
+        }
+    }
+
+    enum TransformKind {
+        IDENTITY,  // Current rect equals the default rect
+        TRANSLATE, // Same size, moved
+        SCALE;     // Resized, needs the full matrix
+
+        static TransformKind between(Rect from, Rect to) {
+            if (from.w != to.w || from.h != to.h) {
+                return SCALE;
+            }
+            return from.x == to.x && from.y == to.y ? IDENTITY : TRANSLATE;
+        }
+    }
+
+    /**
+     * Layer render times over the last {@link LayerTimings#WINDOW} measured frames
+     */
+    record LayerStats(long p50Nanos, long p99Nanos, long maxNanos, long calls) {
+        public static final LayerStats EMPTY = new LayerStats(0, 0, 0, 0);
+    }
+
+    /**
+     * Bytes allocated per frame over the last {@link LayerAllocations#WINDOW} measured frames
+     */
+    record AllocationStats(long meanBytes, long maxBytes, long frames) {
+        public static final AllocationStats EMPTY = new AllocationStats(0, 0, 0);
+    }
+
+    /**
+     * Adapter rendering a {@link LayeredDraw.Layer} through the owning element's cached transform
+     */
+    final class ScaledLayer implements Layer {
+        private final LayeredDraw.Layer layer;
+        HudElement element; // Bound by Impl#register
+
+        public ScaledLayer(LayeredDraw.Layer layer) {
+            this.layer = layer;
+        }
+
+        @Override
+        public void render(Rect rect, GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            HudElement owner = element;
+            ResolvedLayout.ElementLayout layout = owner != null ? owner.layout() : null;
+            if (layout == null || layout.transformKind == TransformKind.IDENTITY) {
+                layer.render(guiGraphics, deltaTracker);
+                return;
+            }
+
+            PoseStack pose = guiGraphics.pose();
+            pose.pushPose();
+            if (layout.transformKind == TransformKind.TRANSLATE) {
+                pose.translate(layout.transform.m30(), layout.transform.m31(), 0f);
+            } else {
+                pose.mulPose(layout.transform);
+            }
+            layer.render(guiGraphics, deltaTracker);
+            pose.popPose();
+        }
+    }
+
+    /**
+     * Layer created on first render and released after long inactivity, see {@link #lazy}.
+     * Goes through the {@link PreparedLayer} path so that a prepared delegate is still prepared once per tick.
+     */
+    final class LazyLayer implements PreparedLayer<Object> {
+        // Client ticks without a render after which the built layer is released, five minutes
+        static final int RELEASE_AFTER_TICKS = 20 * 60 * 5;
+        // Snapshot telling render() to draw the delegate directly: not built yet, or not a PreparedLayer
+        private static final Object DIRECT = new Object();
+
+        private final Supplier<? extends Layer> factory;
+        HudElement element; // Bound by Impl#register, passed on to a scaled delegate
+        private volatile Layer delegate;
+        private int idleTicks = 0; // Render thread only, which is also the client tick thread
+
+        LazyLayer(Supplier<? extends Layer> factory) {
+            this.factory = factory;
+        }
+
+        boolean isCreated() {
+            return delegate != null;
+        }
+
+        @Override
+        public Object prepare() {
+            return delegate instanceof PreparedLayer<?> prepared ? prepared.prepare() : DIRECT;
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return delegate instanceof PreparedLayer<?> prepared && prepared.isConcurrent();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void render(Object state, Rect rect, GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
+            idleTicks = 0;
+            Layer layer = delegate;
+            if (layer == null) {
+                layer = create();
+            }
+            if (state != DIRECT && layer instanceof PreparedLayer<?> prepared) {
+                ((PreparedLayer<Object>) prepared).render(state, rect, guiGraphics, deltaTracker);
+            } else {
+                layer.render(rect, guiGraphics, deltaTracker);
+            }
+        }
+
+        /**
+         * Count one client tick, releasing the built layer once it has not rendered for long.
+         * Never releases while a worker is still inside the delegate's prepare().
+         */
+        void tick() {
+            if (delegate == null || element != null && element.preparing.get()) {
+                return;
+            }
+            if (++idleTicks >= RELEASE_AFTER_TICKS) {
+                release();
+            }
+        }
+
+        private Layer create() {
+            Layer layer = factory.get();
+            if (layer instanceof ScaledLayer scaledLayer) {
+                scaledLayer.element = element;
+            }
+            delegate = layer;
+            return layer;
+        }
+
+        private void release() {
+            Layer layer = delegate;
+            delegate = null;
+            idleTicks = 0;
+            if (element != null) {
+                // The snapshot belongs to the released delegate, the next prepare() starts over
+                element.preparedState = null;
+            }
+            if (layer instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    FlexHud.LOGGER.error("Failed to release HUD layer of {}", element != null ? element.id : null, e);
+                }
+            }
         }
     }
 
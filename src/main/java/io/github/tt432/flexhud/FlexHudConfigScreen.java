@@ -1,11 +1,16 @@
 package io.github.tt432.flexhud;
 
 import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.gui.components.EditBox;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.FormattedCharSequence;
 import org.jetbrains.annotations.NotNull;
+import org.lwjgl.glfw.GLFW;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,16 +27,38 @@ public class FlexHudConfigScreen extends Screen {
     private boolean isDragging = false;
 
     // Resize support
-    private static final int HANDLE_SIZE = 6; // visual square size for handles
+    static final int HANDLE_SIZE = 6; // visual square size for handles
     private static final int HANDLE_RADIUS = 4; // hit test leniency
     private static final int MIN_SIZE = 10; // minimal width/height
 
+    // Layer p99 frame time at which the profiler heatmap tint is fully red
+    private static final long HEATMAP_FULL_NANOS = 1_000_000L;
+
     private boolean isResizing = false;
     private FlexHudApi.HudElement resizingElement = null;
     private HandleType activeHandle = HandleType.NONE;
     private FlexHudApi.Rect initialRectDuringResize = null;
     private float initialAspectRatio = 1f;
 
+    // Snapping: lines of all other elements for the current drag or resize, and the lines snapped to, NaN if none
+    private static final int GUIDE_COLOR = 0xFF00FFFF;
+    private SnapIndex snapIndex = null;
+    private float guideX = Float.NaN;
+    private float guideY = Float.NaN;
+
+    // Labels are built once per element and reused every frame
+    private final Map<FlexHudApi.HudElement, ElementLabels> elementLabels = new IdentityHashMap<>();
+    // Geometry of all placeholders and the labels to draw over it, rebuilt every frame without reallocating
+    private final QuadBatch placeholderBatch = new QuadBatch();
+    private final List<ElementLabels> frameLabels = new ArrayList<>();
+    private String profileLabelName;
+    private FormattedCharSequence profileLabel;
+
+    // Visibility condition editor, opened by middle-clicking an element
+    private EditBox conditionBox;
+    private FlexHudApi.HudElement conditionElement = null;
+    private String conditionError = null;
+
     private enum HandleType {
         NONE,
         LEFT, RIGHT, TOP, BOTTOM,
@@ -43,24 +70,107 @@ public class FlexHudConfigScreen extends Screen {
         this.hudApi = (FlexHudApi.Impl) FlexHudApi.INSTANCE;
     }
 
+    @Override
+    protected void init() {
+        conditionBox = new EditBox(this.font, this.width / 2 - 150, this.height - 40, 300, 20,
+                Component.literal("Visibility condition"));
+        conditionBox.setMaxLength(256);
+        conditionBox.visible = false;
+        addWidget(conditionBox);
+        if (conditionElement != null) {
+            openConditionEditor(conditionElement);
+        }
+    }
+
     @Override
     public void render(@NotNull GuiGraphics guiGraphics, int mouseX, int mouseY, float partialTick) {
-        // Render all HUD elements as outlined rectangles
-        Map<ResourceLocation, FlexHudApi.HudElement> elements = hudApi.getRegisteredElements();
-        for (FlexHudApi.HudElement element : elements.values()) {
-            renderElementPlaceholder(guiGraphics, element, mouseX, mouseY);
+        // One index lookup per frame; rects moved by an ongoing drag are only re-indexed on release
+        FlexHudApi.HudElement hovered = isDragging || isResizing ? null : hudApi.findElementAt(mouseX, mouseY);
+
+        // Render all HUD elements as outlined rectangles, back to front, as one batch of quads
+        frameLabels.clear();
+        for (FlexHudApi.HudElement element : hudApi.getRenderOrder()) {
+            addElementPlaceholder(element, element == hovered);
+        }
+        // Alignment guides of the current snap
+        if (!Float.isNaN(guideX)) {
+            placeholderBatch.fill((int) guideX, 0, (int) guideX + 1, this.height, GUIDE_COLOR);
+        }
+        if (!Float.isNaN(guideY)) {
+            placeholderBatch.fill(0, (int) guideY, this.width, (int) guideY + 1, GUIDE_COLOR);
+        }
+        placeholderBatch.draw(guiGraphics);
+
+        // Edits apply to the profile shown here
+        String profile = hudApi.getActiveProfile();
+        if (!profile.equals(profileLabelName)) {
+            profileLabelName = profile;
+            profileLabel = Component.literal("Profile: " + profile).getVisualOrderText();
+        }
+
+        // Text goes on top of all placeholders, flushed once
+        guiGraphics.drawManaged(() -> {
+            for (ElementLabels labels : frameLabels) {
+                drawLabels(guiGraphics, labels);
+            }
+            guiGraphics.drawCenteredString(this.font, profileLabel, this.width / 2, 4, 0xFFFFFF);
+        });
+
+        if (conditionElement != null) {
+            guiGraphics.drawString(this.font, "Show " + conditionElement.id + " when:",
+                    conditionBox.getX(), conditionBox.getY() - 11, 0xFFFFFF);
+            conditionBox.render(guiGraphics, mouseX, mouseY, partialTick);
+            if (conditionError != null) {
+                guiGraphics.drawString(this.font, conditionError,
+                        conditionBox.getX(), conditionBox.getY() + 24, 0xFF5555);
+            }
         }
     }
 
-    private void renderElementPlaceholder(GuiGraphics guiGraphics, FlexHudApi.HudElement element, int mouseX, int mouseY) {
-        FlexHudApi.Rect rect = element.rect;
-        int x = (int) rect.getX();
-        int y = (int) rect.getY();
-        int width = (int) rect.getW();
-        int height = (int) rect.getH();
+    private void openConditionEditor(FlexHudApi.HudElement element) {
+        conditionElement = element;
+        conditionError = null;
+        String condition = hudApi.getVisibilityCondition(element.id);
+        conditionBox.setValue(condition != null ? condition : "");
+        conditionBox.visible = true;
+        setFocused(conditionBox);
+    }
+
+    private void closeConditionEditor() {
+        conditionElement = null;
+        conditionError = null;
+        conditionBox.visible = false;
+        setFocused(null);
+    }
+
+    @Override
+    public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
+        if (conditionElement != null) {
+            if (keyCode == GLFW.GLFW_KEY_ENTER || keyCode == GLFW.GLFW_KEY_KP_ENTER) {
+                try {
+                    hudApi.setVisibilityCondition(conditionElement.id, conditionBox.getValue());
+                    closeConditionEditor();
+                } catch (IllegalArgumentException e) {
+                    conditionError = e.getMessage();
+                }
+                return true;
+            }
+            if (keyCode == GLFW.GLFW_KEY_ESCAPE) {
+                closeConditionEditor();
+                return true;
+            }
+        }
+        return super.keyPressed(keyCode, scanCode, modifiers);
+    }
+
+    /**
+     * Add the element's body, outline, handles and label backgrounds to the placeholder batch,
+     * and remember where its label text goes
+     */
+    private void addElementPlaceholder(FlexHudApi.HudElement element, boolean isHovered) {
+        FlexHudApi.Rect rect = element.getRect();
 
         // Determine colors based on hover state
-        boolean isHovered = isMouseOverElement(mouseX, mouseY, rect);
         boolean isDraggedElement = element == draggedElement;
 
         int outlineColor;
@@ -69,39 +179,59 @@ public class FlexHudConfigScreen extends Screen {
         if (isDraggedElement) {
             outlineColor = 0xFFFF0000; // Red when dragging
             fillColor = 0x40FF0000;    // Semi-transparent red fill
+        } else if (!element.isEnabled()) {
+            outlineColor = 0xFF808080; // Grey when disabled
+            fillColor = 0x40000000;    // Semi-transparent dark fill
         } else if (isHovered) {
             outlineColor = 0xFFFFFF00; // Yellow when hovered
             fillColor = 0x40FFFF00;    // Semi-transparent yellow fill
         } else {
             outlineColor = 0xFFFFFFFF; // White normally
-            fillColor = 0x20FFFFFF;    // Semi-transparent white fill
+            fillColor = heatmapFillColor(element); // Profiler heatmap, or semi-transparent white fill
         }
 
+        ElementLabels labels = elementLabels.computeIfAbsent(element, ElementLabels::new);
+        frameLabels.add(labels);
+        labels.updateSize(rect.getW(), rect.getH());
+        addPlaceholderQuads(placeholderBatch, rect, element.resizeMode != FlexHudApi.ResizeMode.Fixed,
+                fillColor, outlineColor, labels);
+    }
+
+    /**
+     * Add one element's placeholder quads to the batch: body, outline, resize handles and label backgrounds.
+     * Label widths are read from {@code labels}, and the label text positions written back to it.
+     */
+    static void addPlaceholderQuads(QuadBatch batch, FlexHudApi.Rect rect, boolean resizable,
+                                    int fillColor, int outlineColor, LabelBoxes labels) {
+        int x = (int) rect.getX();
+        int y = (int) rect.getY();
+        int width = (int) rect.getW();
+        int height = (int) rect.getH();
+
         // Draw filled rectangle
-        guiGraphics.fill(x, y, x + width, y + height, fillColor);
+        batch.fill(x, y, x + width, y + height, fillColor);
 
         // Draw outline
-        guiGraphics.hLine(x, x + width - 1, y, outlineColor); // Top
-        guiGraphics.hLine(x, x + width - 1, y + height - 1, outlineColor); // Bottom
-        guiGraphics.vLine(x, y, y + height - 1, outlineColor); // Left
-        guiGraphics.vLine(x + width - 1, y, y + height - 1, outlineColor); // Right
+        batch.hLine(x, x + width - 1, y, outlineColor); // Top
+        batch.hLine(x, x + width - 1, y + height - 1, outlineColor); // Bottom
+        batch.vLine(x, y, y + height - 1, outlineColor); // Left
+        batch.vLine(x + width - 1, y, y + height - 1, outlineColor); // Right
 
         // Draw resize handles if resizable
-        if (element.resizeMode != FlexHudApi.ResizeMode.Fixed) {
-            drawHandle(guiGraphics, x, y); // top-left
-            drawHandle(guiGraphics, x + width / 2 - HANDLE_SIZE / 2, y); // top-center
-            drawHandle(guiGraphics, x + width - HANDLE_SIZE, y); // top-right
+        if (resizable) {
+            addHandle(batch, x, y); // top-left
+            addHandle(batch, x + width / 2 - HANDLE_SIZE / 2, y); // top-center
+            addHandle(batch, x + width - HANDLE_SIZE, y); // top-right
 
-            drawHandle(guiGraphics, x, y + height / 2 - HANDLE_SIZE / 2); // mid-left
-            drawHandle(guiGraphics, x + width - HANDLE_SIZE, y + height / 2 - HANDLE_SIZE / 2); // mid-right
+            addHandle(batch, x, y + height / 2 - HANDLE_SIZE / 2); // mid-left
+            addHandle(batch, x + width - HANDLE_SIZE, y + height / 2 - HANDLE_SIZE / 2); // mid-right
 
-            drawHandle(guiGraphics, x, y + height - HANDLE_SIZE); // bottom-left
-            drawHandle(guiGraphics, x + width / 2 - HANDLE_SIZE / 2, y + height - HANDLE_SIZE); // bottom-center
-            drawHandle(guiGraphics, x + width - HANDLE_SIZE, y + height - HANDLE_SIZE); // bottom-right
+            addHandle(batch, x, y + height - HANDLE_SIZE); // bottom-left
+            addHandle(batch, x + width / 2 - HANDLE_SIZE / 2, y + height - HANDLE_SIZE); // bottom-center
+            addHandle(batch, x + width - HANDLE_SIZE, y + height - HANDLE_SIZE); // bottom-right
         }
 
         // Draw element ID label
-        Component label = Component.literal(element.id.toString());
         int labelX = x + 2;
         int labelY = y - 12;
 
@@ -111,16 +241,13 @@ public class FlexHudConfigScreen extends Screen {
         }
 
         // Draw label background
-        int labelWidth = this.font.width(label);
-        guiGraphics.fill(labelX - 2, labelY - 1, labelX + labelWidth + 2, labelY + 9, 0xC0000000);
-
-        // Draw label text
-        guiGraphics.drawString(this.font, label, labelX, labelY, 0xFFFFFF);
+        int labelWidth = labels.idWidth;
+        batch.fill(labelX - 2, labelY - 1, labelX + labelWidth + 2, labelY + 9, 0xC0000000);
+        labels.idX = labelX;
+        labels.idY = labelY;
 
         // Draw resize mode indicator in the top-right corner of the element
-        String resizeMode = element.resizeMode.name();
-        Component modeLabel = Component.literal("[" + resizeMode + "]");
-        int modeWidth = this.font.width(modeLabel);
+        int modeWidth = labels.modeWidth;
         int modeX = x + width - modeWidth - 2;
         int modeY = y + 2;
 
@@ -132,73 +259,171 @@ public class FlexHudConfigScreen extends Screen {
             modeY = y + height - 10;
         }
 
-        guiGraphics.fill(modeX - 1, modeY - 1, modeX + modeWidth + 1, modeY + 9, 0xC0000000);
-        guiGraphics.drawString(this.font, modeLabel, modeX, modeY, 0xFFFF00);
+        batch.fill(modeX - 1, modeY - 1, modeX + modeWidth + 1, modeY + 9, 0xC0000000);
+        labels.modeX = modeX;
+        labels.modeY = modeY;
 
         // Draw size information in the center
-        String sizeInfo = String.format("%.0f x %.0f", rect.getW(), rect.getH());
-        Component sizeLabel = Component.literal(sizeInfo);
-        int sizeWidth = this.font.width(sizeLabel);
+        int sizeWidth = labels.sizeWidth;
         int sizeX = x + (width - sizeWidth) / 2;
         int sizeY = y + (height - 8) / 2;
 
-        if (sizeX >= x + 2 && sizeX + sizeWidth <= x + width - 2 &&
-                sizeY >= y + 2 && sizeY + 8 <= y + height - 2) {
-            guiGraphics.fill(sizeX - 1, sizeY - 1, sizeX + sizeWidth + 1, sizeY + 9, 0x80000000);
-            guiGraphics.drawString(this.font, sizeLabel, sizeX, sizeY, 0xCCCCCC);
+        labels.sizeVisible = sizeX >= x + 2 && sizeX + sizeWidth <= x + width - 2 &&
+                sizeY >= y + 2 && sizeY + 8 <= y + height - 2;
+        if (labels.sizeVisible) {
+            batch.fill(sizeX - 1, sizeY - 1, sizeX + sizeWidth + 1, sizeY + 9, 0x80000000);
+            labels.sizeX = sizeX;
+            labels.sizeY = sizeY;
+        }
+    }
+
+    private void drawLabels(GuiGraphics guiGraphics, ElementLabels labels) {
+        guiGraphics.drawString(this.font, labels.id, labels.idX, labels.idY, 0xFFFFFF);
+        guiGraphics.drawString(this.font, labels.mode, labels.modeX, labels.modeY, 0xFFFF00);
+        if (labels.sizeVisible) {
+            guiGraphics.drawString(this.font, labels.size, labels.sizeX, labels.sizeY, 0xCCCCCC);
+        }
+    }
+
+    /**
+     * Label widths of one element, and where {@link #addPlaceholderQuads} placed the label text in the current frame
+     */
+    static class LabelBoxes {
+        int idWidth;
+        int modeWidth;
+        int sizeWidth;
+
+        int idX, idY;
+        int modeX, modeY;
+        int sizeX, sizeY;
+        boolean sizeVisible;
+    }
+
+    /**
+     * Label text and widths of one element. The size label is only rebuilt when the rounded size changes.
+     */
+    private final class ElementLabels extends LabelBoxes {
+        final FormattedCharSequence id;
+        final FormattedCharSequence mode;
+        FormattedCharSequence size;
+        private int sizeW = -1;
+        private int sizeH = -1;
+
+        ElementLabels(FlexHudApi.HudElement element) {
+            id = Component.literal(element.id.toString()).getVisualOrderText();
+            idWidth = font.width(id);
+            mode = Component.literal("[" + element.resizeMode.name() + "]").getVisualOrderText();
+            modeWidth = font.width(mode);
+        }
+
+        void updateSize(float w, float h) {
+            int roundedW = Math.round(w);
+            int roundedH = Math.round(h);
+            if (roundedW != sizeW || roundedH != sizeH) {
+                sizeW = roundedW;
+                sizeH = roundedH;
+                size = Component.literal(roundedW + " x " + roundedH).getVisualOrderText();
+                sizeWidth = font.width(size);
+            }
         }
     }
 
-    private void drawHandle(GuiGraphics guiGraphics, int hx, int hy) {
-        guiGraphics.fill(hx, hy, hx + HANDLE_SIZE, hy + HANDLE_SIZE, 0xFFFFFFFF);
-        guiGraphics.fill(hx + 1, hy + 1, hx + HANDLE_SIZE - 1, hy + HANDLE_SIZE - 1, 0xFF000000);
+    /**
+     * Tint from green to red by the layer's measured p99 frame time
+     */
+    private int heatmapFillColor(FlexHudApi.HudElement element) {
+        FlexHudApi.LayerStats stats = element.timings.stats();
+        if (stats.calls() == 0) {
+            return 0x20FFFFFF;
+        }
+        float heat = Math.min(1f, (float) stats.p99Nanos() / HEATMAP_FULL_NANOS);
+        int red = (int) (255 * heat);
+        int green = 255 - red;
+        return 0x60000000 | red << 16 | green << 8;
     }
 
-    private boolean isMouseOverElement(int mouseX, int mouseY, FlexHudApi.Rect rect) {
-        return mouseX >= rect.getX() && mouseX < rect.getX() + rect.getW() &&
-                mouseY >= rect.getY() && mouseY < rect.getY() + rect.getH();
+    private static void addHandle(QuadBatch batch, int hx, int hy) {
+        batch.fill(hx, hy, hx + HANDLE_SIZE, hy + HANDLE_SIZE, 0xFFFFFFFF);
+        batch.fill(hx + 1, hy + 1, hx + HANDLE_SIZE - 1, hy + HANDLE_SIZE - 1, 0xFF000000);
     }
 
     @Override
     public boolean mouseClicked(double mouseX, double mouseY, int button) {
+        if (conditionElement != null && conditionBox.isMouseOver(mouseX, mouseY)) {
+            return super.mouseClicked(mouseX, mouseY, button);
+        }
         if (button == 0) { // Left click
-            Map<ResourceLocation, FlexHudApi.HudElement> elements = hudApi.getRegisteredElements();
-            FlexHudApi.HudElement topElement = null;
-            for (FlexHudApi.HudElement element : elements.values()) {
-                if (isMouseOverElement((int) mouseX, (int) mouseY, element.rect)) {
-                    topElement = element;
-                }
-            }
+            FlexHudApi.HudElement topElement = hudApi.findElementAt((int) mouseX, (int) mouseY);
 
             if (topElement != null) {
                 // Check if clicking on a resize handle first
-                HandleType handle = getHandleUnderMouse(topElement.rect, (int) mouseX, (int) mouseY);
+                HandleType handle = getHandleUnderMouse(topElement.getRect(), (int) mouseX, (int) mouseY);
                 if (handle != HandleType.NONE && topElement.resizeMode != FlexHudApi.ResizeMode.Fixed) {
                     // Start resizing
                     resizingElement = topElement;
                     isResizing = true;
                     activeHandle = handle;
-                    initialRectDuringResize = topElement.rect.copy();
+                    initialRectDuringResize = topElement.getRect().copy();
                     initialAspectRatio = initialRectDuringResize.getW() > 0 && initialRectDuringResize.getH() > 0
                         ? (initialRectDuringResize.getW() / initialRectDuringResize.getH())
                         : 1f;
+                    snapIndex = SnapIndex.build(hudApi.getRenderOrder(), topElement, this.width, this.height);
                     return true;
                 }
 
                 // Otherwise start dragging
                 draggedElement = topElement;
-                dragOffsetX = (int) (mouseX - topElement.rect.getX());
-                dragOffsetY = (int) (mouseY - topElement.rect.getY());
+                dragOffsetX = (int) (mouseX - topElement.getRect().getX());
+                dragOffsetY = (int) (mouseY - topElement.getRect().getY());
                 isDragging = true;
+                snapIndex = SnapIndex.build(hudApi.getRenderOrder(), topElement, this.width, this.height);
+                return true;
+            }
+        } else if (button == 1) { // Right click toggles the element on or off
+            FlexHudApi.HudElement topElement = hudApi.findElementAt((int) mouseX, (int) mouseY);
+            if (topElement != null) {
+                hudApi.setElementEnabled(topElement.id, !topElement.isEnabled());
+                return true;
+            }
+        } else if (button == 2) { // Middle click edits the element's visibility condition
+            FlexHudApi.HudElement topElement = hudApi.findElementAt((int) mouseX, (int) mouseY);
+            if (topElement != null) {
+                openConditionEditor(topElement);
                 return true;
             }
         }
         return super.mouseClicked(mouseX, mouseY, button);
     }
 
+    /**
+     * Smallest shift that puts the start, centre or end of a span of {@code size} at {@code start} on a snap line,
+     * NaN if none is in reach. Sets the matching guide line.
+     */
+    private float snapOffset(boolean horizontal, float start, float size) {
+        float bestOffset = Float.NaN;
+        float bestLine = Float.NaN;
+        for (int i = 0; i < 3; i++) {
+            float edge = start + size * i / 2;
+            float line = horizontal ? snapIndex.snapX(edge) : snapIndex.snapY(edge);
+            if (!Float.isNaN(line) && (Float.isNaN(bestOffset) || Math.abs(line - edge) < Math.abs(bestOffset))) {
+                bestOffset = line - edge;
+                bestLine = line;
+            }
+        }
+        if (horizontal) {
+            guideX = bestLine;
+        } else {
+            guideY = bestLine;
+        }
+        return bestOffset;
+    }
+
     @Override
     public boolean mouseReleased(double mouseX, double mouseY, int button) {
         if (button == 0) {
+            snapIndex = null;
+            guideX = Float.NaN;
+            guideY = Float.NaN;
             if (isDragging) {
                 isDragging = false;
                 if (draggedElement != null) {
@@ -230,16 +455,44 @@ public class FlexHudConfigScreen extends Screen {
             float newX = (float) (mouseX - dragOffsetX);
             float newY = (float) (mouseY - dragOffsetY);
 
+            // Snap the left edge, centre or right edge to the nearest line, then the same vertically
+            FlexHudApi.Rect rect = draggedElement.getRect();
+            guideX = Float.NaN;
+            guideY = Float.NaN;
+            if (snapIndex != null && !hasShiftDown()) { // Shift moves freely
+                float offsetX = snapOffset(true, newX, rect.getW());
+                if (!Float.isNaN(offsetX)) {
+                    newX += offsetX;
+                }
+                float offsetY = snapOffset(false, newY, rect.getH());
+                if (!Float.isNaN(offsetY)) {
+                    newY += offsetY;
+                }
+            }
+
             // Clamp to screen bounds
-            newX = Math.max(0, Math.min(newX, this.width - draggedElement.rect.getW()));
-            newY = Math.max(0, Math.min(newY, this.height - draggedElement.rect.getH())); // 50px from top for UI
+            newX = Math.max(0, Math.min(newX, this.width - rect.getW()));
+            newY = Math.max(0, Math.min(newY, this.height - rect.getH())); // 50px from top for UI
 
-            draggedElement.rect.setX(newX);
-            draggedElement.rect.setY(newY);
+            rect.setX(newX);
+            rect.setY(newY);
 
             return true;
         }
         if (button == 0 && isResizing && resizingElement != null && activeHandle != HandleType.NONE) {
+            // Snap the edge under the cursor
+            guideX = Float.NaN;
+            guideY = Float.NaN;
+            if (snapIndex != null && !hasShiftDown()) {
+                guideX = snapIndex.snapX((float) mouseX);
+                guideY = snapIndex.snapY((float) mouseY);
+                if (!Float.isNaN(guideX)) {
+                    mouseX = guideX;
+                }
+                if (!Float.isNaN(guideY)) {
+                    mouseY = guideY;
+                }
+            }
             applyResize(resizingElement, (int) mouseX, (int) mouseY);
             return true;
         }
@@ -285,7 +538,7 @@ public class FlexHudConfigScreen extends Screen {
     }
 
     private void applyResize(FlexHudApi.HudElement element, int mouseX, int mouseY) {
-        FlexHudApi.Rect rect = element.rect;
+        FlexHudApi.Rect rect = element.getRect();
         float x = rect.getX();
         float y = rect.getY();
         float w = rect.getW();
@@ -531,16 +784,22 @@ public class FlexHudConfigScreen extends Screen {
      * Convert absolute rect back to relative rect and update the element
      */
     private void updateElementFromAbsoluteRect(FlexHudApi.HudElement element) {
-        if (element.relativeRect != null) {
-            // Convert current absolute rect back to relative rect
+        FlexHudApi.RelativeRect relativeRect = element.getRelativeRect();
+        if (relativeRect != null) {
+            // Convert current absolute rect back to relative rect, keeping it anchored to its parent element if any
+            FlexHudApi.HudElement parent = relativeRect.getParent() != null
+                ? hudApi.getRegisteredElements().get(relativeRect.getParent())
+                : null;
+            FlexHudApi.Rect frame = parent != null && parent.getRect() != null
+                ? parent.getRect()
+                : new FlexHudApi.Rect(0, 0, this.width, this.height);
             FlexHudApi.RelativeRect newRelativeRect = FlexHudApi.RelativeRect.fromAbsolute(
-                element.rect, 
-                element.relativeRect.getAnchor(), 
-                this.width, 
-                this.height
+                element.getRect(), 
+                relativeRect.getAnchor(), 
+                frame,
+                relativeRect.getParent()
             );
-            element.relativeRect = newRelativeRect;
-            // Update the element's relative rect
+            // Update the element's relative rect in the active profile
             hudApi.updateElementRelativeRect(element.id, newRelativeRect);
         }
     }
@@ -0,0 +1,52 @@
+package io.github.tt432.flexhud;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads used by FlexHUD. Created lazily, all threads are daemons.
+ *
+ * @author TT432
+ */
+final class FlexHudWorkers {
+    private FlexHudWorkers() {
+    }
+
+    /**
+     * Pool running {@link FlexHudApi.PreparedLayer#prepare()} for concurrent layers
+     */
+    static ExecutorService prepare() {
+        return PrepareHolder.POOL;
+    }
+
+    /**
+     * Single thread for debounced disk writes
+     */
+    static ScheduledExecutorService io() {
+        return IoHolder.EXECUTOR;
+    }
+
+    static ThreadFactory daemonFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + " #" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class PrepareHolder {
+        // Leave at least one core to the client and render threads
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 2)),
+                daemonFactory("FlexHUD Prepare"));
+    }
+
+    private static final class IoHolder {
+        private static final ScheduledExecutorService EXECUTOR =
+                Executors.newSingleThreadScheduledExecutor(daemonFactory("FlexHUD IO"));
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.tt432.flexhud;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Rolling window of bytes allocated by the render thread while one HUD element, or the whole HUD pass, renders.
+ * Written by the render thread, read by {@link FlexHudApi#getAllocationStats} from any thread.
+ *
+ * @author TT432
+ */
+final class LayerAllocations {
+    // Number of most recent frames the stats are computed over, also the minimum number of frames between two warnings
+    static final int WINDOW = 256;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final long[] samples = new long[WINDOW];
+    private int next = 0;
+    private int size = 0;
+    private long total = 0;
+    private long frames = 0;
+    // Frame count of the last over-budget warning, so a steady offender is reported once per window
+    private long lastWarning = -WINDOW;
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Whether this JVM can measure per-thread allocations at all
+     */
+    static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Bytes allocated by the calling thread so far, -1 if not supported
+     */
+    static long currentThreadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Add one frame's sample
+     *
+     * @return true if it exceeded {@code budget} and no warning was due within the last window
+     */
+    synchronized boolean record(long bytes, long budget) {
+        total += bytes - (size == WINDOW ? samples[next] : 0);
+        samples[next] = bytes;
+        next = (next + 1) % WINDOW;
+        if (size < WINDOW) {
+            size++;
+        }
+        frames++;
+
+        if (budget > 0 && bytes > budget && frames - lastWarning >= WINDOW) {
+            lastWarning = frames;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized FlexHudApi.AllocationStats stats() {
+        if (size == 0) {
+            return FlexHudApi.AllocationStats.EMPTY;
+        }
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return new FlexHudApi.AllocationStats(total / size, max, frames);
+    }
+
+    synchronized void reset() {
+        next = 0;
+        size = 0;
+        total = 0;
+        frames = 0;
+        lastWarning = -WINDOW;
+    }
+}
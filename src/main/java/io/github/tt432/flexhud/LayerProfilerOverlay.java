@@ -0,0 +1,70 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Debug overlay listing per-layer frame times, and allocations while the allocation meter is on, toggled with {@link FlexHud#TOGGLE_PROFILER_KEY}
+ *
+ * @author TT432
+ */
+public class LayerProfilerOverlay {
+    private static final int MAX_LINES = 20;
+    private static final long REFRESH_INTERVAL_MS = 500;
+
+    // Lines are rebuilt twice a second so the overlay itself stays cheap and readable
+    private static List<String> lines = List.of();
+    private static long lastRefresh = 0;
+
+    public static void render(GuiGraphics guiGraphics, FlexHudApi.Impl impl) {
+        long now = Util.getMillis();
+        if (now - lastRefresh >= REFRESH_INTERVAL_MS) {
+            lines = buildLines(impl);
+            lastRefresh = now;
+        }
+
+        Font font = Minecraft.getInstance().font;
+        int y = 2;
+        for (String line : lines) {
+            guiGraphics.fill(1, y - 1, 3 + font.width(line), y + 9, 0xC0000000);
+            guiGraphics.drawString(font, line, 2, y, 0xFFFFFF, false);
+            y += 10;
+        }
+    }
+
+    private static List<String> buildLines(FlexHudApi.Impl impl) {
+        List<FlexHudApi.HudElement> elements = new ArrayList<>(Arrays.asList(impl.getRenderOrder()));
+        elements.sort(Comparator.comparingLong((FlexHudApi.HudElement e) -> e.timings.stats().p99Nanos()).reversed());
+
+        List<String> result = new ArrayList<>();
+        boolean metering = FlexConfig.INSTANCE.isAllocationMeterEnabled();
+        result.add(String.format("FlexHUD layers (p50 / p99 / max ms, calls%s), %d culled, %d disabled",
+                metering ? ", mean / max bytes" : "", impl.getCulledCount(), impl.getDisabledCount()));
+        if (metering) {
+            FlexHudApi.AllocationStats pass = impl.getPassAllocationStats();
+            result.add(String.format("HUD pass  %d / %d bytes", pass.meanBytes(), pass.maxBytes()));
+        }
+        for (FlexHudApi.HudElement element : elements) {
+            if (result.size() > MAX_LINES) {
+                break;
+            }
+            FlexHudApi.LayerStats stats = element.timings.stats();
+            String line = String.format("%s  %.3f / %.3f / %.3f  %d", element.id,
+                    stats.p50Nanos() / 1_000_000.0, stats.p99Nanos() / 1_000_000.0, stats.maxNanos() / 1_000_000.0,
+                    stats.calls());
+            if (metering) {
+                FlexHudApi.AllocationStats allocations = element.allocations.stats();
+                line += String.format("  %d / %d", allocations.meanBytes(), allocations.maxBytes());
+            }
+            result.add(line);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.tt432.flexhud;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of layer render times for a single HUD element.
+ * Written by the render thread, read by {@link FlexHudApi#getLayerStats} from any thread.
+ *
+ * @author TT432
+ */
+final class LayerTimings {
+    // Number of most recent frames the percentiles are computed over
+    static final int WINDOW = 256;
+
+    private final long[] samples = new long[WINDOW];
+    private int next = 0;
+    private int size = 0;
+    private long calls = 0;
+
+    // Stats derived from the current window, dropped whenever a new sample arrives
+    private FlexHudApi.LayerStats cached = FlexHudApi.LayerStats.EMPTY;
+    private boolean stale = false;
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        if (size < WINDOW) {
+            size++;
+        }
+        calls++;
+        stale = true;
+    }
+
+    synchronized FlexHudApi.LayerStats stats() {
+        if (stale) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            cached = new FlexHudApi.LayerStats(
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.99),
+                    sorted[size - 1],
+                    calls
+            );
+            stale = false;
+        }
+        return cached;
+    }
+
+    synchronized void reset() {
+        next = 0;
+        size = 0;
+        calls = 0;
+        cached = FlexHudApi.LayerStats.EMPTY;
+        stale = false;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.tt432.flexhud;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of resolved layouts keyed by profile and screen metrics.
+ * Returning to a window size or GUI scale seen recently reuses its rects and transforms instead of resolving them again.
+ *
+ * @author TT432
+ */
+final class LayoutCache {
+    private final LinkedHashMap<Key, ResolvedLayout> entries;
+
+    LayoutCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ResolvedLayout> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized ResolvedLayout get(Key key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(ResolvedLayout layout) {
+        entries.put(Key.of(layout), layout);
+    }
+
+    /**
+     * Add every cached layout to {@code out}, without touching the access order
+     */
+    synchronized void addAllTo(Collection<ResolvedLayout> out) {
+        out.addAll(entries.values());
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    record Key(String profile, int screenWidth, int screenHeight, double guiScale) {
+        static Key of(ResolvedLayout layout) {
+            return new Key(layout.profile, layout.screenWidth, layout.screenHeight, layout.guiScale);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package io.github.tt432.flexhud;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.minecraft.resources.ResourceLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versioned JSON storage of element layouts, kept next to the client TOML as {@code flexhud-layouts.json}.
+ * Layouts are grouped in named profiles; which profile is active is kept in the TOML so switching never rewrites this file:
+ * <pre>
+ * {
+ *   "schema": 2,
+ *   "profiles": {
+ *     "default": {
+ *       "elements": {
+ *         "flexhud:hotbar": { "anchor": "BOTTOM_CENTER", "offset_x": 0.0, "offset_y": 0.0, "width": 182.0, "height": 22.0, "relative_size": false }
+ *       }
+ *     }
+ *   }
+ * }
+ * </pre>
+ * Entries anchored to another element carry its id as {@code "parent"}.
+ * Schema 1 files, which only had a top-level {@code elements} object, are read as the default profile.
+ * Entries are only decoded into {@link FlexHudApi.RelativeRect} when their element asks for them.
+ * Entries of elements that never register are written back untouched.
+ * A file modified by someone else is merged back with {@link #reload()}, entry by entry.
+ *
+ * @author TT432
+ */
+final class LayoutStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LayoutStore.class);
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    static final String FILE_NAME = "flexhud-layouts.json";
+    static final int SCHEMA_VERSION = 2;
+    static final String DEFAULT_PROFILE = "default";
+
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    private volatile Path path;
+    // Modification time of the file as last read or written by us
+    private volatile FileTime knownStamp;
+    // Elements of every profile as last read or written by us, the base that external edits are diffed against
+    private Map<String, JsonObject> diskProfiles = Map.of();
+
+    LayoutStore() {
+        profiles.put(DEFAULT_PROFILE, new Profile());
+    }
+
+    /**
+     * Read the file at {@code path}, replacing all in-memory entries. A missing file leaves only an empty default profile.
+     */
+    synchronized void load(Path path) {
+        this.path = path;
+        profiles.clear();
+        knownStamp = null;
+        diskProfiles = Map.of();
+
+        try {
+            if (Files.exists(path)) {
+                try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    diskProfiles = read(JsonParser.parseReader(reader).getAsJsonObject());
+                }
+                for (Map.Entry<String, JsonObject> entry : diskProfiles.entrySet()) {
+                    profiles.put(entry.getKey(), Profile.read(entry.getValue()));
+                }
+                knownStamp = Files.getLastModifiedTime(path);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to read HUD layouts from {}", path, e);
+        }
+
+        profiles.computeIfAbsent(DEFAULT_PROFILE, name -> new Profile());
+    }
+
+    /**
+     * Elements object of every profile in the file
+     */
+    private Map<String, JsonObject> read(JsonObject root) {
+        int schema = root.has("schema") ? root.get("schema").getAsInt() : 1;
+        if (schema > SCHEMA_VERSION) {
+            LOGGER.warn("{} has schema {}, newer than supported {}; reading known fields only", path, schema, SCHEMA_VERSION);
+        }
+
+        Map<String, JsonObject> result = new HashMap<>();
+        if (schema == 1) {
+            // Single layout without profiles
+            result.put(DEFAULT_PROFILE, elementsOrEmpty(root.getAsJsonObject("elements")));
+            return result;
+        }
+
+        JsonObject profilesJson = root.getAsJsonObject("profiles");
+        if (profilesJson != null) {
+            for (Map.Entry<String, JsonElement> entry : profilesJson.entrySet()) {
+                if (entry.getValue().isJsonObject()) {
+                    result.put(entry.getKey(), elementsOrEmpty(entry.getValue().getAsJsonObject().getAsJsonObject("elements")));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static JsonObject elementsOrEmpty(JsonObject elements) {
+        return elements != null ? elements : new JsonObject();
+    }
+
+    /**
+     * Re-read the file after someone else modified it and merge what they changed into memory.
+     * Entries are diffed against the file as we last read or wrote it, so only entries edited on disk are replaced
+     * and unsaved edits of other entries survive.
+     *
+     * @return the profiles and entries that changed, empty if the file could not be read
+     */
+    synchronized Diff reload() {
+        Path current = path;
+        FileTime stamp;
+        Map<String, JsonObject> onDisk;
+        try {
+            stamp = Files.getLastModifiedTime(current);
+        } catch (IOException e) {
+            return Diff.EMPTY;
+        }
+        try (Reader reader = Files.newBufferedReader(current, StandardCharsets.UTF_8)) {
+            onDisk = read(JsonParser.parseReader(reader).getAsJsonObject());
+        } catch (Exception e) {
+            // Likely caught mid-save by an editor; wait for its next write instead of retrying every poll
+            LOGGER.error("Failed to re-read HUD layouts from {}", current, e);
+            knownStamp = stamp;
+            return Diff.EMPTY;
+        }
+
+        Set<String> profilesBefore = new HashSet<>(profiles.keySet());
+        Map<String, Set<String>> changed = new HashMap<>();
+        Set<String> names = new HashSet<>(onDisk.keySet());
+        names.addAll(diskProfiles.keySet());
+        for (String name : names) {
+            JsonObject before = diskProfiles.get(name);
+            JsonObject after = onDisk.get(name);
+            if (after == null && !name.equals(DEFAULT_PROFILE)) {
+                profiles.remove(name);
+                continue;
+            }
+
+            Profile profile = profiles.computeIfAbsent(name, key -> new Profile());
+            Set<String> ids = new HashSet<>();
+            if (before != null) {
+                ids.addAll(before.keySet());
+            }
+            if (after != null) {
+                ids.addAll(after.keySet());
+            }
+            for (String id : ids) {
+                JsonElement now = after != null ? after.get(id) : null;
+                if (Objects.equals(before != null ? before.get(id) : null, now)) {
+                    continue;
+                }
+                if (now != null && now.isJsonObject()) {
+                    profile.putRaw(id, now.getAsJsonObject());
+                } else {
+                    profile.remove(id);
+                }
+                changed.computeIfAbsent(name, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        diskProfiles = onDisk;
+        knownStamp = stamp;
+        return new Diff(!profilesBefore.equals(profiles.keySet()), changed);
+    }
+
+    boolean isLoaded() {
+        return path != null;
+    }
+
+    /**
+     * Whether the file was modified by someone else since we last read or wrote it
+     */
+    boolean isChangedOnDisk() {
+        Path current = path;
+        if (current == null || !Files.exists(current)) {
+            return false;
+        }
+        try {
+            return !Files.getLastModifiedTime(current).equals(knownStamp);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Profile with the given name, null if it does not exist
+     */
+    Profile profile(String name) {
+        return profiles.get(name);
+    }
+
+    Set<String> getProfileNames() {
+        return new TreeSet<>(profiles.keySet());
+    }
+
+    /**
+     * Create a profile holding a copy of all entries of {@code copyFrom}, or return the existing one.
+     * {@code copyFrom} may be null to start empty.
+     */
+    Profile createProfile(String name, String copyFrom) {
+        Profile existing = profiles.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        Profile source = copyFrom != null ? profiles.get(copyFrom) : null;
+        return profiles.computeIfAbsent(name, key -> {
+            Profile profile = new Profile();
+            if (source != null) {
+                profile.decoded.putAll(source.getAll());
+            }
+            return profile;
+        });
+    }
+
+    /**
+     * Write all profiles to a temporary file and atomically move it over the layout file
+     */
+    synchronized void write() throws IOException {
+        Path target = path;
+        if (target == null) {
+            return; // Not loaded yet, nothing to write to
+        }
+
+        JsonObject profilesJson = new JsonObject();
+        for (Map.Entry<String, Profile> entry : profiles.entrySet()) {
+            JsonObject profileJson = new JsonObject();
+            profileJson.add("elements", entry.getValue().write());
+            profilesJson.add(entry.getKey(), profileJson);
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty("schema", SCHEMA_VERSION);
+        root.add("profiles", profilesJson);
+
+        String json = GSON.toJson(root);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(json);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        knownStamp = Files.getLastModifiedTime(target);
+        // Parsed back so numbers compare the same way as in entries read from an edited file
+        diskProfiles = read(JsonParser.parseString(json).getAsJsonObject());
+    }
+
+    /**
+     * Entries changed by {@link #reload()}, by profile. {@code profilesChanged} is set when profiles were added or removed.
+     */
+    record Diff(boolean profilesChanged, Map<String, Set<String>> changedIds) {
+        static final Diff EMPTY = new Diff(false, Map.of());
+
+        boolean isEmpty() {
+            return !profilesChanged && changedIds.isEmpty();
+        }
+
+        int size() {
+            int size = 0;
+            for (Set<String> ids : changedIds.values()) {
+                size += ids.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Element layouts of one profile
+     */
+    static final class Profile {
+        // Raw entries read from disk that no element has asked for yet, or that fail to decode and are written back as is
+        private final Map<String, JsonObject> undecoded = new ConcurrentHashMap<>();
+        private final Map<String, FlexHudApi.RelativeRect> decoded = new ConcurrentHashMap<>();
+
+        static Profile read(JsonObject elements) {
+            Profile profile = new Profile();
+            if (elements != null) {
+                for (Map.Entry<String, JsonElement> entry : elements.entrySet()) {
+                    if (entry.getValue().isJsonObject()) {
+                        profile.undecoded.put(entry.getKey(), entry.getValue().getAsJsonObject());
+                    }
+                }
+            }
+            return profile;
+        }
+
+        boolean contains(String id) {
+            return decoded.containsKey(id) || undecoded.containsKey(id);
+        }
+
+        FlexHudApi.RelativeRect get(String id) {
+            FlexHudApi.RelativeRect relativeRect = decoded.get(id);
+            if (relativeRect != null) {
+                return relativeRect;
+            }
+
+            JsonObject raw = undecoded.get(id);
+            if (raw == null) {
+                return null;
+            }
+            relativeRect = decode(id, raw);
+            if (relativeRect != null) {
+                // Publish the decoded entry before dropping the raw one so a concurrent write never misses it
+                decoded.put(id, relativeRect);
+                undecoded.remove(id);
+            }
+            return relativeRect;
+        }
+
+        void put(String id, FlexHudApi.RelativeRect relativeRect) {
+            decoded.put(id, relativeRect);
+            undecoded.remove(id);
+        }
+
+        /**
+         * Replace an entry with a raw one, decoded when next asked for
+         */
+        void putRaw(String id, JsonObject raw) {
+            undecoded.put(id, raw);
+            decoded.remove(id);
+        }
+
+        void remove(String id) {
+            decoded.remove(id);
+            undecoded.remove(id);
+        }
+
+        /**
+         * Decode every entry, including those of elements that are not registered
+         */
+        Map<String, FlexHudApi.RelativeRect> getAll() {
+            for (String id : undecoded.keySet()) {
+                get(id);
+            }
+            return new HashMap<>(decoded);
+        }
+
+        JsonObject write() {
+            JsonObject elements = new JsonObject();
+            for (Map.Entry<String, JsonObject> entry : undecoded.entrySet()) {
+                elements.add(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, FlexHudApi.RelativeRect> entry : decoded.entrySet()) {
+                elements.add(entry.getKey(), encode(entry.getValue()));
+            }
+            return elements;
+        }
+    }
+
+    static JsonObject encode(FlexHudApi.RelativeRect relativeRect) {
+        JsonObject json = new JsonObject();
+        json.addProperty("anchor", relativeRect.getAnchor().name());
+        json.addProperty("offset_x", relativeRect.getOffsetX());
+        json.addProperty("offset_y", relativeRect.getOffsetY());
+        json.addProperty("width", relativeRect.getWidth());
+        json.addProperty("height", relativeRect.getHeight());
+        json.addProperty("relative_size", relativeRect.isUseRelativeSize());
+        if (relativeRect.getParent() != null) {
+            json.addProperty("parent", relativeRect.getParent().toString());
+        }
+        return json;
+    }
+
+    static FlexHudApi.RelativeRect decode(String id, JsonObject json) {
+        try {
+            FlexHudApi.Anchor anchor = json.has("anchor")
+                    ? FlexHudApi.Anchor.byName(json.get("anchor").getAsString(), FlexHudApi.Anchor.TOP_LEFT)
+                    : FlexHudApi.Anchor.TOP_LEFT;
+            return new FlexHudApi.RelativeRect(
+                    anchor,
+                    json.get("offset_x").getAsFloat(),
+                    json.get("offset_y").getAsFloat(),
+                    json.get("width").getAsFloat(),
+                    json.get("height").getAsFloat(),
+                    json.has("relative_size") && json.get("relative_size").getAsBoolean(),
+                    json.has("parent") ? ResourceLocation.parse(json.get("parent").getAsString()) : null
+            );
+        } catch (RuntimeException e) {
+            LOGGER.warn("Invalid layout entry for {}: {}", id, json);
+            return null;
+        }
+    }
+}
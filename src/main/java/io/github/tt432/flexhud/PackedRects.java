@@ -0,0 +1,121 @@
+package io.github.tt432.flexhud;
+
+/**
+ * Relative rects of all slots of a layout packed into parallel float arrays, with their resolved absolute rects.
+ * {@link #resolveAll} resolves every slot against the screen in one branch-free pass over the arrays,
+ * a counted loop the JIT can unroll and vectorise. Slots anchored to an element are resolved one by one
+ * with {@link #resolve}, against their parent's output.
+ * Not thread-safe: packed and resolved on the render thread by {@link ResolvedLayout#update()}.
+ *
+ * @author TT432
+ */
+final class PackedRects {
+    // Inputs per slot. relative is 1 when the size is a fraction of the frame, else 0; empty slots have zero size.
+    private final float[] anchorX;
+    private final float[] anchorY;
+    private final float[] offsetX;
+    private final float[] offsetY;
+    private final float[] width;
+    private final float[] height;
+    private final float[] relative;
+
+    // Resolved rect per slot
+    final float[] x;
+    final float[] y;
+    final float[] w;
+    final float[] h;
+
+    PackedRects(int capacity) {
+        anchorX = new float[capacity];
+        anchorY = new float[capacity];
+        offsetX = new float[capacity];
+        offsetY = new float[capacity];
+        width = new float[capacity];
+        height = new float[capacity];
+        relative = new float[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        w = new float[capacity];
+        h = new float[capacity];
+    }
+
+    int capacity() {
+        return x.length;
+    }
+
+    /**
+     * Copy of this store with room for {@code capacity} slots, packed inputs and outputs kept
+     */
+    PackedRects grow(int capacity) {
+        PackedRects grown = new PackedRects(capacity);
+        int length = Math.min(capacity, x.length);
+        System.arraycopy(anchorX, 0, grown.anchorX, 0, length);
+        System.arraycopy(anchorY, 0, grown.anchorY, 0, length);
+        System.arraycopy(offsetX, 0, grown.offsetX, 0, length);
+        System.arraycopy(offsetY, 0, grown.offsetY, 0, length);
+        System.arraycopy(width, 0, grown.width, 0, length);
+        System.arraycopy(height, 0, grown.height, 0, length);
+        System.arraycopy(relative, 0, grown.relative, 0, length);
+        System.arraycopy(x, 0, grown.x, 0, length);
+        System.arraycopy(y, 0, grown.y, 0, length);
+        System.arraycopy(w, 0, grown.w, 0, length);
+        System.arraycopy(h, 0, grown.h, 0, length);
+        return grown;
+    }
+
+    /**
+     * Store the slot's relative rect, null packs an empty rect
+     */
+    void pack(int slot, FlexHudApi.RelativeRect relativeRect) {
+        if (relativeRect == null) {
+            anchorX[slot] = anchorY[slot] = offsetX[slot] = offsetY[slot] = width[slot] = height[slot] = relative[slot] = 0;
+            return;
+        }
+        FlexHudApi.Anchor anchor = relativeRect.getAnchor();
+        anchorX[slot] = anchor.getXPercent();
+        anchorY[slot] = anchor.getYPercent();
+        offsetX[slot] = relativeRect.getOffsetX();
+        offsetY[slot] = relativeRect.getOffsetY();
+        width[slot] = relativeRect.getWidth();
+        height[slot] = relativeRect.getHeight();
+        relative[slot] = relativeRect.isUseRelativeSize() ? 1f : 0f;
+    }
+
+    /**
+     * Resolve slots {@code [0, count)} against a screen-sized frame at the origin.
+     * Same arithmetic as {@link FlexHudApi.RelativeRect#toAbsolute}, so results are bit-identical.
+     */
+    void resolveAll(int count, float frameWidth, float frameHeight) {
+        float[] anchorX = this.anchorX, anchorY = this.anchorY, offsetX = this.offsetX, offsetY = this.offsetY;
+        float[] width = this.width, height = this.height, relative = this.relative;
+        float[] x = this.x, y = this.y, w = this.w, h = this.h;
+        for (int i = 0; i < count; i++) {
+            // relative * frame + (1 - relative) is exactly frame or 1, selecting the size without a branch
+            float absoluteWidth = width[i] * (relative[i] * frameWidth + (1f - relative[i]));
+            float absoluteHeight = height[i] * (relative[i] * frameHeight + (1f - relative[i]));
+            x[i] = frameWidth * anchorX[i] + offsetX[i] - absoluteWidth * anchorX[i];
+            y[i] = frameHeight * anchorY[i] + offsetY[i] - absoluteHeight * anchorY[i];
+            w[i] = absoluteWidth;
+            h[i] = absoluteHeight;
+        }
+    }
+
+    /**
+     * Resolve one slot against the given frame, the parent's resolved rect or the screen
+     */
+    void resolve(int slot, float frameX, float frameY, float frameWidth, float frameHeight) {
+        float absoluteWidth = relative[slot] != 0 ? frameWidth * width[slot] : width[slot];
+        float absoluteHeight = relative[slot] != 0 ? frameHeight * height[slot] : height[slot];
+        x[slot] = frameX + frameWidth * anchorX[slot] + offsetX[slot] - absoluteWidth * anchorX[slot];
+        y[slot] = frameY + frameHeight * anchorY[slot] + offsetY[slot] - absoluteHeight * anchorY[slot];
+        w[slot] = absoluteWidth;
+        h[slot] = absoluteHeight;
+    }
+
+    void copyTo(int slot, FlexHudApi.Rect out) {
+        out.setX(x[slot]);
+        out.setY(y[slot]);
+        out.setW(w[slot]);
+        out.setH(h[slot]);
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.tt432.flexhud;
+
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.renderer.RenderType;
+import org.joml.Matrix4f;
+
+import java.util.Arrays;
+
+/**
+ * Solid-colour GUI quads collected into plain arrays and submitted as one draw.
+ * Building does not touch any rendering state, so the geometry can be checked without a game running.
+ *
+ * @author TT432
+ */
+final class QuadBatch {
+    static final int VERTICES_PER_QUAD = 4;
+
+    // Per quad: minX, minY, maxX, maxY
+    private int[] bounds = new int[64 * 4];
+    private int[] colors = new int[64];
+    private int quadCount = 0;
+
+    /**
+     * Add a filled rect, same semantics as {@link GuiGraphics#fill(int, int, int, int, int)}. Empty rects are skipped.
+     */
+    void fill(int minX, int minY, int maxX, int maxY, int color) {
+        if (minX > maxX) {
+            int swap = minX;
+            minX = maxX;
+            maxX = swap;
+        }
+        if (minY > maxY) {
+            int swap = minY;
+            minY = maxY;
+            maxY = swap;
+        }
+        if (minX == maxX || minY == maxY) {
+            return;
+        }
+
+        if (quadCount == colors.length) {
+            colors = Arrays.copyOf(colors, quadCount * 2);
+            bounds = Arrays.copyOf(bounds, quadCount * 2 * 4);
+        }
+        int offset = quadCount * 4;
+        bounds[offset] = minX;
+        bounds[offset + 1] = minY;
+        bounds[offset + 2] = maxX;
+        bounds[offset + 3] = maxY;
+        colors[quadCount++] = color;
+    }
+
+    /**
+     * Same as {@link GuiGraphics#hLine(int, int, int, int)}
+     */
+    void hLine(int minX, int maxX, int y, int color) {
+        if (maxX < minX) {
+            int swap = minX;
+            minX = maxX;
+            maxX = swap;
+        }
+        fill(minX, y, maxX + 1, y + 1, color);
+    }
+
+    /**
+     * Same as {@link GuiGraphics#vLine(int, int, int, int)}
+     */
+    void vLine(int x, int minY, int maxY, int color) {
+        if (maxY < minY) {
+            int swap = minY;
+            minY = maxY;
+            maxY = swap;
+        }
+        fill(x, minY + 1, x + 1, maxY, color);
+    }
+
+    int getQuadCount() {
+        return quadCount;
+    }
+
+    int getVertexCount() {
+        return quadCount * VERTICES_PER_QUAD;
+    }
+
+    /**
+     * Bound {@code i} of the quad at {@code index}, in the order minX, minY, maxX, maxY
+     */
+    int getBound(int index, int i) {
+        return bounds[index * 4 + i];
+    }
+
+    void clear() {
+        quadCount = 0;
+    }
+
+    /**
+     * Write every quad into the GUI buffer in insertion order and draw them with a single flush, then clear
+     */
+    void draw(GuiGraphics guiGraphics) {
+        if (quadCount == 0) {
+            return;
+        }
+
+        Matrix4f pose = guiGraphics.pose().last().pose();
+        VertexConsumer consumer = guiGraphics.bufferSource().getBuffer(RenderType.gui());
+        for (int i = 0; i < quadCount; i++) {
+            int offset = i * 4;
+            float minX = bounds[offset];
+            float minY = bounds[offset + 1];
+            float maxX = bounds[offset + 2];
+            float maxY = bounds[offset + 3];
+            int color = colors[i];
+            consumer.addVertex(pose, minX, minY, 0).setColor(color);
+            consumer.addVertex(pose, minX, maxY, 0).setColor(color);
+            consumer.addVertex(pose, maxX, maxY, 0).setColor(color);
+            consumer.addVertex(pose, maxX, minY, 0).setColor(color);
+        }
+        guiGraphics.flush();
+        clear();
+    }
+}
@@ -0,0 +1,335 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.resources.ResourceLocation;
+import org.joml.Matrix4f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * Absolute rects of all registered elements under one layout profile at one set of screen metrics.
+ * Every profile keeps an instance resolved for the current screen, so switching profiles only swaps the active instance,
+ * and instances of recently seen screen metrics stay in {@link LayoutCache}.
+ * <p>
+ * Elements anchored to another element form a dependency graph. It is sorted topologically whenever a slot
+ * or a parent changes, and a layout pass walks that order so that a moved element only re-resolves
+ * the elements that depend on it, directly or transitively.
+ * The rect math itself runs on {@link PackedRects}; each {@link ElementLayout} is the object view handed to layers.
+ *
+ * @author TT432
+ */
+final class ResolvedLayout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedLayout.class);
+
+    final String profile;
+    final int screenWidth;
+    final int screenHeight;
+    final double guiScale;
+
+    // Indexed by HudElement#slot, replaced as a whole under Impl's registration lock. Never modify the array.
+    private volatile ElementLayout[] slots = new ElementLayout[0];
+    // Set when any slot was marked dirty since the last layout pass
+    volatile boolean dirty = true;
+    private volatile int culledCount = 0;
+    // Resolved rects of all slots that are not culled, kept in step by update()
+    final SpatialIndex index;
+
+    // Slot of a registered element id, -1 if it is not registered
+    private final ToIntFunction<ResourceLocation> slotLookup;
+    // Slots with parents before their dependents, rebuilt by update() when graphDirty is set. Render thread only.
+    private int[] order = new int[0];
+    private volatile boolean graphDirty = true;
+    // Incremented by every update(), a layout resolved in the current pass forces its dependents to resolve
+    private int pass = 0;
+    // Packed relative and resolved rects of every slot, current and default. Render thread only.
+    private PackedRects packed = new PackedRects(0);
+    private PackedRects packedDefaults = new PackedRects(0);
+
+    ResolvedLayout(String profile, int screenWidth, int screenHeight, double guiScale,
+                   ToIntFunction<ResourceLocation> slotLookup) {
+        this.profile = profile;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.guiScale = guiScale;
+        this.index = new SpatialIndex(screenWidth, screenHeight);
+        this.slotLookup = slotLookup;
+    }
+
+    /**
+     * Layout of the element in the given slot, null if it was registered after this profile was built
+     */
+    ElementLayout get(int slot) {
+        ElementLayout[] current = slots;
+        return slot >= 0 && slot < current.length ? current[slot] : null;
+    }
+
+    void set(int slot, ElementLayout layout) {
+        ElementLayout[] next = slot < slots.length ? slots.clone() : Arrays.copyOf(slots, slot + 1);
+        next[slot] = layout;
+        slots = next;
+        graphDirty = true;
+        dirty = true;
+    }
+
+    /**
+     * Set several slots with a single copy of the slot array
+     */
+    void setAll(int[] slotIndices, ElementLayout[] layouts) {
+        int length = slots.length;
+        for (int slot : slotIndices) {
+            length = Math.max(length, slot + 1);
+        }
+        ElementLayout[] next = Arrays.copyOf(slots, length);
+        for (int i = 0; i < slotIndices.length; i++) {
+            next[slotIndices[i]] = layouts[i];
+        }
+        slots = next;
+        graphDirty = true;
+        dirty = true;
+    }
+
+    /**
+     * Replace the element's relative rect, it is re-resolved by the next {@link #update()} of this layout
+     */
+    void setRelativeRect(int slot, FlexHudApi.RelativeRect relativeRect) {
+        ElementLayout layout = get(slot);
+        if (layout != null) {
+            FlexHudApi.RelativeRect previous = layout.relativeRect;
+            if (previous == null || !Objects.equals(previous.getParent(), relativeRect.getParent())) {
+                graphDirty = true;
+            }
+            layout.relativeRect = relativeRect;
+            layout.dirty = true;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Whether anchoring element {@code id} to {@code parent} would make it depend on itself
+     */
+    boolean wouldCycle(ResourceLocation id, ResourceLocation parent) {
+        return wouldCycle(id, parent, Map.of());
+    }
+
+    /**
+     * Same as {@link #wouldCycle(ResourceLocation, ResourceLocation)}, with {@code pending} parents taking precedence
+     * over the ones in this layout, for elements that are about to be registered
+     */
+    boolean wouldCycle(ResourceLocation id, ResourceLocation parent, Map<ResourceLocation, ResourceLocation> pending) {
+        ResourceLocation current = parent;
+        // A chain longer than all known elements already contains a cycle of other elements
+        for (int steps = 0; current != null && steps <= slots.length + pending.size(); steps++) {
+            if (current.equals(id)) {
+                return true;
+            }
+            if (pending.containsKey(current)) {
+                current = pending.get(current);
+                continue;
+            }
+            ElementLayout layout = get(slotLookup.applyAsInt(current));
+            FlexHudApi.RelativeRect relativeRect = layout != null ? layout.relativeRect : null;
+            current = relativeRect != null ? relativeRect.getParent() : null;
+        }
+        return false;
+    }
+
+    void markDirty(int slot) {
+        ElementLayout layout = get(slot);
+        if (layout != null) {
+            layout.dirty = true;
+            dirty = true;
+        }
+    }
+
+    int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * Re-resolve every slot that changed since it was last resolved and move it in the spatial index
+     */
+    void update() {
+        dirty = false;
+        ElementLayout[] current = slots;
+        if (graphDirty || order.length != current.length) {
+            graphDirty = false;
+            sort(current);
+        }
+
+        // Pack the relative rects that changed
+        if (packed.capacity() < current.length) {
+            int capacity = Math.max(current.length, packed.capacity() * 2);
+            packed = packed.grow(capacity);
+            packedDefaults = packedDefaults.grow(capacity);
+        }
+        int dirtyCount = 0;
+        for (int slot = 0; slot < current.length; slot++) {
+            ElementLayout layout = current[slot];
+            if (layout != null && layout.dirty) {
+                // Cleared before reading the rect: a rect set meanwhile marks the slot dirty again for the next pass
+                layout.dirty = false;
+                layout.stale = true;
+                packed.pack(slot, layout.relativeRect);
+                packedDefaults.pack(slot, layout.defaultRelativeRect);
+                dirtyCount++;
+            }
+        }
+
+        // Mostly stale, e.g. a freshly built layout: resolve everything against the screen in one pass over the arrays,
+        // then only elements anchored to others still need resolving one by one
+        boolean full = dirtyCount * 2 >= current.length;
+        if (full) {
+            packed.resolveAll(current.length, screenWidth, screenHeight);
+            packedDefaults.resolveAll(current.length, screenWidth, screenHeight);
+        }
+
+        int culled = 0;
+        pass++;
+        for (int slot : order) {
+            ElementLayout layout = current[slot];
+            if (layout == null) {
+                continue;
+            }
+            int parentSlot = layout.parentSlot;
+            ElementLayout parent = parentSlot >= 0 ? current[parentSlot] : null;
+            if (full || layout.stale || parent != null && parent.resolvedPass == pass) {
+                if (parent != null) {
+                    packed.resolve(slot, packed.x[parentSlot], packed.y[parentSlot], packed.w[parentSlot], packed.h[parentSlot]);
+                } else if (!full) {
+                    packed.resolve(slot, 0, 0, screenWidth, screenHeight);
+                }
+                if (parent != null && layout.defaultRelativeRect != null && layout.defaultRelativeRect.getParent() != null) {
+                    // Default rects anchored to an element follow that element's default rect
+                    packedDefaults.resolve(slot, packedDefaults.x[parentSlot], packedDefaults.y[parentSlot],
+                            packedDefaults.w[parentSlot], packedDefaults.h[parentSlot]);
+                } else if (!full) {
+                    packedDefaults.resolve(slot, 0, 0, screenWidth, screenHeight);
+                }
+                layout.apply(packed, packedDefaults, slot, screenWidth, screenHeight);
+                layout.resolvedPass = pass;
+                index.update(slot, layout.rect, layout.culled);
+            }
+            if (layout.culled) {
+                culled++;
+            }
+        }
+        culledCount = culled;
+    }
+
+    /**
+     * Link every layout to the slot of its parent and order the slots so that parents come first.
+     * Elements caught in a cycle, only possible through a hand-edited layout file, fall back to the screen.
+     */
+    private void sort(ElementLayout[] current) {
+        int count = current.length;
+        // Number of unsorted parents per slot (0 or 1), and the dependents of each slot as linked lists
+        int[] pending = new int[count];
+        int[] firstChild = new int[count];
+        int[] nextSibling = new int[count];
+        Arrays.fill(firstChild, -1);
+        for (int slot = 0; slot < count; slot++) {
+            ElementLayout layout = current[slot];
+            if (layout == null) {
+                continue;
+            }
+            FlexHudApi.RelativeRect relativeRect = layout.relativeRect;
+            ResourceLocation parent = relativeRect != null ? relativeRect.getParent() : null;
+            int parentSlot = parent != null ? slotLookup.applyAsInt(parent) : -1;
+            if (parentSlot < 0 || parentSlot >= count || current[parentSlot] == null || parentSlot == slot) {
+                parentSlot = -1; // Not registered (yet), anchored to the screen until it is
+            }
+            if (parentSlot != layout.parentSlot) {
+                layout.parentSlot = parentSlot;
+                layout.dirty = true;
+            }
+            if (parentSlot >= 0) {
+                pending[slot] = 1;
+                nextSibling[slot] = firstChild[parentSlot];
+                firstChild[parentSlot] = slot;
+            }
+        }
+
+        int[] sorted = new int[count];
+        int size = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (pending[slot] == 0) {
+                sorted[size++] = slot;
+            }
+        }
+        int next = 0;
+        int unreached = 0;
+        while (true) {
+            for (; next < size; next++) {
+                for (int child = firstChild[sorted[next]]; child >= 0; child = nextSibling[child]) {
+                    if (pending[child] != 0) {
+                        pending[child] = 0;
+                        sorted[size++] = child;
+                    }
+                }
+            }
+            if (size == count) {
+                break;
+            }
+
+            // Everything left is in or below a cycle. Walking up the parents of any of it long enough lands in a cycle,
+            // cut the cycle there and carry on from that slot.
+            while (pending[unreached] == 0) {
+                unreached++;
+            }
+            int cut = unreached;
+            for (int i = 0; i < count; i++) {
+                cut = current[cut].parentSlot;
+            }
+            LOGGER.warn("Layout {} anchors slot {} in a cycle, anchoring it to the screen", profile, cut);
+            current[cut].parentSlot = -1;
+            current[cut].dirty = true;
+            pending[cut] = 0;
+            sorted[size++] = cut;
+        }
+        order = sorted;
+    }
+
+    /**
+     * Where one element sits in one profile at one screen size
+     */
+    static final class ElementLayout {
+        volatile FlexHudApi.RelativeRect relativeRect; // Relative positioning definition
+        final FlexHudApi.RelativeRect defaultRelativeRect; // Layout the layer draws at without any transform
+        final FlexHudApi.Rect rect = new FlexHudApi.Rect(0, 0, 0, 0); // Calculated absolute position for rendering
+        boolean culled = false; // Resolved rect is empty or entirely off-screen
+        volatile boolean dirty = true; // relativeRect changed since it was last packed
+        private boolean stale = false; // Packed but not resolved yet, render thread only
+        int parentSlot = -1; // Slot of the element relativeRect is anchored to, -1 for the screen
+        private int resolvedPass = 0; // Layout pass this was last resolved in
+
+        // Cached affine transform from the default rect to the current rect, refreshed on resolve
+        private final FlexHudApi.Rect defaultRect = new FlexHudApi.Rect(0, 0, 0, 0);
+        final Matrix4f transform = new Matrix4f();
+        FlexHudApi.TransformKind transformKind = FlexHudApi.TransformKind.IDENTITY;
+
+        ElementLayout(FlexHudApi.RelativeRect relativeRect, FlexHudApi.RelativeRect defaultRelativeRect) {
+            this.relativeRect = relativeRect;
+            this.defaultRelativeRect = defaultRelativeRect;
+        }
+
+        /**
+         * Take over the slot's resolved rects from the packed store and refresh culling and the transform
+         */
+        void apply(PackedRects packed, PackedRects packedDefaults, int slot, int screenWidth, int screenHeight) {
+            stale = false;
+            packed.copyTo(slot, rect);
+            culled = rect.getW() <= 0 || rect.getH() <= 0
+                    || rect.getX() >= screenWidth || rect.getY() >= screenHeight
+                    || rect.getX() + rect.getW() <= 0 || rect.getY() + rect.getH() <= 0;
+            if (defaultRelativeRect != null) {
+                packedDefaults.copyTo(slot, defaultRect);
+                defaultRect.transform(rect, transform);
+                transformKind = FlexHudApi.TransformKind.between(defaultRect, rect);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.tt432.flexhud;
+
+import java.util.Arrays;
+
+/**
+ * Sorted x and y lines that elements snap to in the config screen: screen edges and centre lines,
+ * plus the edges and centres of every other element. Built once when a drag or resize starts,
+ * every mouse move then snaps with a binary search.
+ *
+ * @author TT432
+ */
+final class SnapIndex {
+    // Distance in gui-scaled pixels within which an edge snaps to a line
+    static final float SNAP_DISTANCE = 4f;
+
+    private final float[] xs;
+    private final float[] ys;
+
+    private SnapIndex(float[] xs, float[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * Index the screen and all elements except {@code exclude}, which is the one being moved
+     */
+    static SnapIndex build(FlexHudApi.HudElement[] elements, FlexHudApi.HudElement exclude, int screenWidth, int screenHeight) {
+        float[] xs = new float[3 + elements.length * 3];
+        float[] ys = new float[xs.length];
+        int size = 0;
+        xs[size] = 0;
+        ys[size++] = 0;
+        xs[size] = screenWidth / 2f;
+        ys[size++] = screenHeight / 2f;
+        xs[size] = screenWidth;
+        ys[size++] = screenHeight;
+
+        for (FlexHudApi.HudElement element : elements) {
+            FlexHudApi.Rect rect = element.getRect();
+            if (element == exclude || rect == null || element.isCulled()) {
+                continue;
+            }
+            xs[size] = rect.getX();
+            ys[size++] = rect.getY();
+            xs[size] = rect.getX() + rect.getW() / 2;
+            ys[size++] = rect.getY() + rect.getH() / 2;
+            xs[size] = rect.getX() + rect.getW();
+            ys[size++] = rect.getY() + rect.getH();
+        }
+
+        xs = Arrays.copyOf(xs, size);
+        ys = Arrays.copyOf(ys, size);
+        Arrays.sort(xs);
+        Arrays.sort(ys);
+        return new SnapIndex(xs, ys);
+    }
+
+    /**
+     * Nearest vertical line within {@link #SNAP_DISTANCE} of {@code x}, NaN if there is none
+     */
+    float snapX(float x) {
+        return nearest(xs, x);
+    }
+
+    /**
+     * Nearest horizontal line within {@link #SNAP_DISTANCE} of {@code y}, NaN if there is none
+     */
+    float snapY(float y) {
+        return nearest(ys, y);
+    }
+
+    private static float nearest(float[] sorted, float value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return sorted[index];
+        }
+
+        // Only the neighbours of the insertion point can be the nearest line
+        int insertion = -index - 1;
+        float below = insertion > 0 ? value - sorted[insertion - 1] : Float.POSITIVE_INFINITY;
+        float above = insertion < sorted.length ? sorted[insertion] - value : Float.POSITIVE_INFINITY;
+        if (below <= above) {
+            return below <= SNAP_DISTANCE ? sorted[insertion - 1] : Float.NaN;
+        }
+        return above <= SNAP_DISTANCE ? sorted[insertion] : Float.NaN;
+    }
+}
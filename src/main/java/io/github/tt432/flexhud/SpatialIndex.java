@@ -0,0 +1,148 @@
+package io.github.tt432.flexhud;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the resolved rects of one {@link ResolvedLayout}.
+ * Point and region queries only look at elements stored in the touched cells,
+ * and an element is moved between cells whenever its rect is re-resolved.
+ * Not thread-safe: updated and queried on the render thread.
+ *
+ * @author TT432
+ */
+final class SpatialIndex {
+    static final int CELL_SIZE = 32;
+
+    private final int columns;
+    private final int rows;
+    // Slots stored in each cell, row-major; cellSizes holds how many entries of each array are used
+    private final int[][] cells;
+    private final int[] cellSizes;
+    // Cell range each slot is stored in as {minColumn, minRow, maxColumn, maxRow}, null while not indexed
+    private int[][] ranges = new int[0][];
+
+    // Query scratch: results of the last query, and the query stamp per slot that filters duplicates
+    private int[] results = new int[16];
+    private int[] stamps = new int[0];
+    private int stamp = 0;
+
+    SpatialIndex(int screenWidth, int screenHeight) {
+        columns = Math.max(0, Math.ceilDiv(screenWidth, CELL_SIZE));
+        rows = Math.max(0, Math.ceilDiv(screenHeight, CELL_SIZE));
+        cells = new int[columns * rows][];
+        cellSizes = new int[columns * rows];
+    }
+
+    /**
+     * Store the slot in the cells its rect overlaps, or drop it from the index when culled
+     */
+    void update(int slot, FlexHudApi.Rect rect, boolean culled) {
+        remove(slot);
+        if (culled || cells.length == 0) {
+            return;
+        }
+
+        if (slot >= ranges.length) {
+            ranges = Arrays.copyOf(ranges, Math.max(slot + 1, ranges.length * 2));
+        }
+        int[] range = {
+                column(rect.getX()), row(rect.getY()),
+                column(rect.getX() + rect.getW()), row(rect.getY() + rect.getH())
+        };
+        ranges[slot] = range;
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[2]; column++) {
+                add(row * columns + column, slot);
+            }
+        }
+    }
+
+    void remove(int slot) {
+        if (slot >= ranges.length || ranges[slot] == null) {
+            return;
+        }
+
+        int[] range = ranges[slot];
+        ranges[slot] = null;
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[2]; column++) {
+                removeFromCell(row * columns + column, slot);
+            }
+        }
+    }
+
+    /**
+     * Collect every slot stored in cells overlapping the region, each once.
+     * Candidates still have to be checked against their exact rect.
+     *
+     * @return number of results, read them with {@link #result(int)} before the next query
+     */
+    int query(float x, float y, float width, float height) {
+        if (cells.length == 0 || x + width < 0 || y + height < 0) {
+            return 0;
+        }
+
+        stamp++;
+        int count = 0;
+        int maxRow = row(y + height);
+        int maxColumn = column(x + width);
+        for (int row = row(y); row <= maxRow; row++) {
+            for (int column = column(x); column <= maxColumn; column++) {
+                int cell = row * columns + column;
+                int[] slots = cells[cell];
+                for (int i = 0; i < cellSizes[cell]; i++) {
+                    int slot = slots[i];
+                    if (slot >= stamps.length) {
+                        stamps = Arrays.copyOf(stamps, Math.max(slot + 1, stamps.length * 2));
+                    }
+                    if (stamps[slot] == stamp) {
+                        continue; // Spans several cells of this query
+                    }
+                    stamps[slot] = stamp;
+                    if (count == results.length) {
+                        results = Arrays.copyOf(results, count * 2);
+                    }
+                    results[count++] = slot;
+                }
+            }
+        }
+        return count;
+    }
+
+    int result(int index) {
+        return results[index];
+    }
+
+    private int column(float x) {
+        return Math.clamp((int) Math.floor(x / CELL_SIZE), 0, columns - 1);
+    }
+
+    private int row(float y) {
+        return Math.clamp((int) Math.floor(y / CELL_SIZE), 0, rows - 1);
+    }
+
+    private void add(int cell, int slot) {
+        int[] slots = cells[cell];
+        int size = cellSizes[cell];
+        if (slots == null) {
+            slots = cells[cell] = new int[4];
+        } else if (size == slots.length) {
+            slots = cells[cell] = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size] = slot;
+        cellSizes[cell] = size + 1;
+    }
+
+    private void removeFromCell(int cell, int slot) {
+        int[] slots = cells[cell];
+        int size = cellSizes[cell];
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == slot) {
+                // Order within a cell does not matter, move the last entry into the gap
+                slots[i] = slots[size - 1];
+                cellSizes[cell] = size - 1;
+                return;
+            }
+        }
+    }
+}
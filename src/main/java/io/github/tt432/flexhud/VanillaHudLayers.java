@@ -0,0 +1,125 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.LayeredDraw;
+import net.minecraft.resources.ResourceLocation;
+import net.neoforged.neoforge.client.gui.VanillaGuiLayers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vanilla GUI layers that FlexHUD draws as its own movable elements.
+ * {@link io.github.tt432.flexhud.mixin.GuiMixin} offers every vanilla layer to {@link #capture}. A layer listed here keeps
+ * its slot in the GuiLayerManager, now drawing the FlexHUD element, so it stays in vanilla z-order and layers that other
+ * mods order against it still resolve. Only a layer the user has disabled is left out of the layer manager, so it costs
+ * nothing per frame; enabled again later, it is drawn by the FlexHUD pass until the next restart.
+ *
+ * @author TT432
+ */
+public final class VanillaHudLayers {
+    // Vanilla draw order. Positions are where vanilla draws each layer when nothing is stacked on Gui#leftHeight/rightHeight.
+    private static final Map<ResourceLocation, Spec> SPECS = new LinkedHashMap<>();
+    private static final Map<ResourceLocation, LayeredDraw.Layer> CAPTURED = new ConcurrentHashMap<>();
+    // Element ids whose vanilla slot was kept and draws them
+    private static final Set<ResourceLocation> IN_PLACE = ConcurrentHashMap.newKeySet();
+
+    // Vanilla layers sit below elements registered by other mods, which default to priority 0
+    private static final int BASE_PRIORITY = -100;
+
+    static {
+        define(VanillaGuiLayers.HOTBAR, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 0, 0, 182, 22));
+        define(VanillaGuiLayers.JUMP_METER, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 0, -24, 182, 5));
+        define(VanillaGuiLayers.EXPERIENCE_BAR, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 0, -24, 182, 5));
+        // Status bars still stack on Gui#leftHeight and Gui#rightHeight: drawn in vanilla order, extra rows of hearts
+        // push armor and air up as usual, and each element's transform moves its stack from there
+        define(VanillaGuiLayers.PLAYER_HEALTH, rect(FlexHudApi.Anchor.BOTTOM_CENTER, -50.5f, -30, 81, 9));
+        define(VanillaGuiLayers.ARMOR_LEVEL, rect(FlexHudApi.Anchor.BOTTOM_CENTER, -50.5f, -40, 81, 9));
+        define(VanillaGuiLayers.FOOD_LEVEL, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 50.5f, -30, 81, 9));
+        define(VanillaGuiLayers.VEHICLE_HEALTH, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 50.5f, -30, 81, 9));
+        define(VanillaGuiLayers.AIR_LEVEL, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 50.5f, -40, 81, 9));
+        define(VanillaGuiLayers.SELECTED_ITEM_NAME, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 0, -50, 120, 9));
+        define(VanillaGuiLayers.EXPERIENCE_LEVEL, rect(FlexHudApi.Anchor.BOTTOM_CENTER, 0, -26, 40, 9));
+        define(VanillaGuiLayers.EFFECTS, rect(FlexHudApi.Anchor.TOP_RIGHT, -1, 1, 125, 50));
+        define(VanillaGuiLayers.BOSS_OVERLAY, rect(FlexHudApi.Anchor.TOP_CENTER, 0, 3, 182, 19));
+        define(VanillaGuiLayers.SCOREBOARD_SIDEBAR, rect(FlexHudApi.Anchor.CENTER_RIGHT, -1, 0, 100, 120));
+        define(VanillaGuiLayers.CHAT, rect(FlexHudApi.Anchor.BOTTOM_LEFT, 0, -40, 330, 90));
+    }
+
+    private VanillaHudLayers() {
+    }
+
+    private static FlexHudApi.RelativeRect rect(FlexHudApi.Anchor anchor, float offsetX, float offsetY, float width, float height) {
+        return new FlexHudApi.RelativeRect(anchor, offsetX, offsetY, width, height);
+    }
+
+    private static void define(ResourceLocation layer, FlexHudApi.RelativeRect defaultRelativeRect) {
+        SPECS.put(layer, new Spec(elementId(layer), defaultRelativeRect));
+    }
+
+    /**
+     * FlexHUD element id of a vanilla layer, e.g. {@code flexhud:hotbar} for {@code minecraft:hotbar}
+     */
+    public static ResourceLocation elementId(ResourceLocation layer) {
+        return ResourceLocation.fromNamespaceAndPath(FlexHud.MOD_ID, layer.getPath());
+    }
+
+    /**
+     * Take a vanilla layer over if FlexHUD knows where it draws. Called while the Gui is constructed.
+     *
+     * @return the layer to add under the vanilla name: unknown layers unchanged, known ones replaced by a layer drawing
+     * their FlexHUD element in place, or null to add nothing because the user disabled the element
+     */
+    public static LayeredDraw.Layer capture(ResourceLocation name, LayeredDraw.Layer layer) {
+        Spec spec = SPECS.get(name);
+        if (spec == null) {
+            return layer;
+        }
+        CAPTURED.put(name, layer);
+        if (!FlexConfig.INSTANCE.isElementEnabled(spec.id())) {
+            return null;
+        }
+
+        IN_PLACE.add(spec.id());
+        ResourceLocation id = spec.id();
+        return (guiGraphics, deltaTracker) -> {
+            // Same conditions as the FlexHUD pass: the editor draws placeholders instead, and F1 hides the HUD
+            Minecraft minecraft = Minecraft.getInstance();
+            if (!(minecraft.screen instanceof FlexHudConfigScreen) && !minecraft.options.hideGui) {
+                ((FlexHudApi.Impl) FlexHudApi.INSTANCE).renderInPlace(id, guiGraphics, deltaTracker);
+            }
+        };
+    }
+
+    /**
+     * Register every captured vanilla layer as a FlexHUD element, in vanilla draw order
+     */
+    static void registerAll() {
+        int priority = BASE_PRIORITY;
+        FlexHudApi.Registration registration = FlexHudApi.INSTANCE.registration();
+        for (Map.Entry<ResourceLocation, Spec> entry : SPECS.entrySet()) {
+            Spec spec = entry.getValue();
+            LayeredDraw.Layer layer = CAPTURED.get(entry.getKey());
+            if (layer == null) {
+                // Not added through the redirected call, it stays with the GuiLayerManager
+                FlexHud.LOGGER.debug("Vanilla GUI layer {} was not captured, leaving it to vanilla", entry.getKey());
+                continue;
+            }
+            registration.add(spec.id(), FlexHudApi.ResizeMode.Free, spec.defaultRelativeRect(), FlexHudApi.scaled(layer), priority++);
+        }
+        registration.commit();
+
+        Map<ResourceLocation, FlexHudApi.HudElement> elements = ((FlexHudApi.Impl) FlexHudApi.INSTANCE).getRegisteredElements();
+        for (ResourceLocation id : IN_PLACE) {
+            FlexHudApi.HudElement element = elements.get(id);
+            if (element != null) {
+                element.drawnInPlace = true;
+            }
+        }
+    }
+
+    private record Spec(ResourceLocation id, FlexHudApi.RelativeRect defaultRelativeRect) {
+    }
+}
@@ -0,0 +1,274 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Declarative condition under which a HUD element is shown, compiled once into a predicate tree
+ * and evaluated once per client tick. Grammar:
+ * <pre>
+ * expression := or
+ * or         := and ("||" and)*
+ * and        := unary ("&amp;&amp;" unary)*
+ * unary      := "!" unary | "(" expression ")" | test
+ * test       := stat ("&lt;" | "&lt;=" | "&gt;" | "&gt;=") number ["%"]
+ *             | "holding" item_id
+ *             | "dimension" dimension_id
+ *             | flag
+ * stat       := health | food | air | armor
+ * flag       := underwater | in_water | in_lava | on_fire | riding | sneaking | sprinting | flying | creative | spectator
+ * </pre>
+ * A number followed by {@code %} compares against the stat's maximum, e.g. {@code health < 50% || holding minecraft:bow}.
+ *
+ * @author TT432
+ */
+final class VisibilityCondition {
+    private final String source;
+    private final Predicate<Player> predicate;
+
+    private VisibilityCondition(String source, Predicate<Player> predicate) {
+        this.source = source;
+        this.predicate = predicate;
+    }
+
+    /**
+     * Compile an expression
+     *
+     * @throws IllegalArgumentException describing the first error and where it is
+     */
+    static VisibilityCondition parse(String source) {
+        Parser parser = new Parser(source);
+        Predicate<Player> predicate = parser.or();
+        if (parser.peek() != null) {
+            throw parser.error("Unexpected '" + parser.peek() + "'");
+        }
+        return new VisibilityCondition(source.trim(), predicate);
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    boolean test(Player player) {
+        return predicate.test(player);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private enum Stat {
+        HEALTH(Player::getHealth, Player::getMaxHealth),
+        FOOD(player -> player.getFoodData().getFoodLevel(), player -> 20),
+        AIR(Player::getAirSupply, Player::getMaxAirSupply),
+        ARMOR(Player::getArmorValue, player -> 20);
+
+        private final ToDoubleFunction<Player> value;
+        private final ToDoubleFunction<Player> max;
+
+        Stat(ToDoubleFunction<Player> value, ToDoubleFunction<Player> max) {
+            this.value = value;
+            this.max = max;
+        }
+    }
+
+    private enum Flag {
+        UNDERWATER(Player::isUnderWater),
+        IN_WATER(Player::isInWater),
+        IN_LAVA(Player::isInLava),
+        ON_FIRE(Player::isOnFire),
+        RIDING(Player::isPassenger),
+        SNEAKING(Player::isShiftKeyDown),
+        SPRINTING(Player::isSprinting),
+        FLYING(player -> player.getAbilities().flying),
+        CREATIVE(Player::isCreative),
+        SPECTATOR(Player::isSpectator);
+
+        private final Predicate<Player> test;
+
+        Flag(Predicate<Player> test) {
+            this.test = test;
+        }
+    }
+
+    /**
+     * Recursive descent over the tokens of one expression
+     */
+    private static final class Parser {
+        private final String source;
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private int next = 0;
+
+        Parser(String source) {
+            this.source = source;
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                if (c == '&' || c == '|') {
+                    if (i + 1 >= source.length() || source.charAt(i + 1) != c) {
+                        throw new IllegalArgumentException("Expected '" + c + c + "' at " + i + " in: " + source);
+                    }
+                    i += 2;
+                } else if (c == '<' || c == '>') {
+                    i += i + 1 < source.length() && source.charAt(i + 1) == '=' ? 2 : 1;
+                } else if (c == '!' || c == '(' || c == ')' || c == '%') {
+                    i++;
+                } else if (isWordChar(c)) {
+                    while (i < source.length() && isWordChar(source.charAt(i))) {
+                        i++;
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unexpected '" + c + "' at " + i + " in: " + source);
+                }
+                tokens.add(source.substring(start, i));
+                positions.add(start);
+            }
+        }
+
+        private static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '/' || c == '.' || c == '-';
+        }
+
+        String peek() {
+            return next < tokens.size() ? tokens.get(next) : null;
+        }
+
+        private String take(String expected) {
+            String token = peek();
+            if (token == null) {
+                throw error("Expected " + expected + " but the condition ended");
+            }
+            next++;
+            return token;
+        }
+
+        IllegalArgumentException error(String message) {
+            int position = next < positions.size() ? positions.get(next) : source.length();
+            return new IllegalArgumentException(message + " at " + position + " in: " + source);
+        }
+
+        Predicate<Player> or() {
+            Predicate<Player> result = and();
+            while ("||".equals(peek())) {
+                next++;
+                result = result.or(and());
+            }
+            return result;
+        }
+
+        private Predicate<Player> and() {
+            Predicate<Player> result = unary();
+            while ("&&".equals(peek())) {
+                next++;
+                result = result.and(unary());
+            }
+            return result;
+        }
+
+        private Predicate<Player> unary() {
+            String token = peek();
+            if ("!".equals(token)) {
+                next++;
+                return unary().negate();
+            }
+            if ("(".equals(token)) {
+                next++;
+                Predicate<Player> inner = or();
+                if (!")".equals(peek())) {
+                    throw error("Expected ')'");
+                }
+                next++;
+                return inner;
+            }
+            return test();
+        }
+
+        private Predicate<Player> test() {
+            String word = take("a condition").toLowerCase(Locale.ROOT);
+            switch (word) {
+                case "holding" -> {
+                    ResourceLocation item = id("an item id");
+                    return player -> isItem(player.getMainHandItem(), item) || isItem(player.getOffhandItem(), item);
+                }
+                case "dimension" -> {
+                    ResourceLocation dimension = id("a dimension id");
+                    return player -> player.level().dimension().location().equals(dimension);
+                }
+                default -> {
+                    for (Flag flag : Flag.values()) {
+                        if (flag.name().toLowerCase(Locale.ROOT).equals(word)) {
+                            return flag.test;
+                        }
+                    }
+                    for (Stat stat : Stat.values()) {
+                        if (stat.name().toLowerCase(Locale.ROOT).equals(word)) {
+                            return comparison(stat);
+                        }
+                    }
+                    next--;
+                    throw error("Unknown condition '" + word + "'");
+                }
+            }
+        }
+
+        private Predicate<Player> comparison(Stat stat) {
+            String operator = take("a comparison");
+            if (!operator.equals("<") && !operator.equals("<=") && !operator.equals(">") && !operator.equals(">=")) {
+                next--;
+                throw error("Expected <, <=, > or >= after " + stat.name().toLowerCase(Locale.ROOT));
+            }
+            String number = take("a number");
+            double threshold;
+            try {
+                threshold = Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                next--;
+                throw error("Expected a number");
+            }
+            boolean percent = "%".equals(peek());
+            if (percent) {
+                next++;
+            }
+
+            ToDoubleFunction<Player> value = percent
+                    ? player -> stat.value.applyAsDouble(player) / Math.max(1e-6, stat.max.applyAsDouble(player))
+                    : stat.value;
+            double limit = percent ? threshold / 100 : threshold;
+            return switch (operator) {
+                case "<" -> player -> value.applyAsDouble(player) < limit;
+                case "<=" -> player -> value.applyAsDouble(player) <= limit;
+                case ">" -> player -> value.applyAsDouble(player) > limit;
+                default -> player -> value.applyAsDouble(player) >= limit;
+            };
+        }
+
+        private ResourceLocation id(String expected) {
+            String token = take(expected);
+            ResourceLocation id = ResourceLocation.tryParse(token);
+            if (id == null) {
+                next--;
+                throw error("Expected " + expected);
+            }
+            return id;
+        }
+
+        private static boolean isItem(ItemStack stack, ResourceLocation item) {
+            return !stack.isEmpty() && BuiltInRegistries.ITEM.getKey(stack.getItem()).equals(item);
+        }
+    }
+}
@@ -1,25 +1,23 @@
 package io.github.tt432.flexhud.mixin;
 
+import io.github.tt432.flexhud.VanillaHudLayers;
 import net.minecraft.client.gui.Gui;
 import net.minecraft.client.gui.LayeredDraw;
 import net.minecraft.resources.ResourceLocation;
 import net.neoforged.neoforge.client.gui.GuiLayerManager;
-import net.neoforged.neoforge.client.gui.VanillaGuiLayers;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
 /**
- * Mixin to intercept the hotbar rendering in Minecraft's Gui class
- * and redirect it to FlexHUD's custom rendering system.
+ * Mixin to intercept vanilla GUI layer registration in Minecraft's Gui class
+ * and put the FlexHUD element in the slot of every layer it takes over.
  */
 @Mixin(Gui.class)
 public class GuiMixin {
     @Redirect(method = "<init>", at = @At(value = "INVOKE", target = "Lnet/neoforged/neoforge/client/gui/GuiLayerManager;add(Lnet/minecraft/resources/ResourceLocation;Lnet/minecraft/client/gui/LayeredDraw$Layer;)Lnet/neoforged/neoforge/client/gui/GuiLayerManager;"))
     private GuiLayerManager onGuiLayerRegister(GuiLayerManager instance, ResourceLocation name, LayeredDraw.Layer layer) {
-        if (name.equals(VanillaGuiLayers.HOTBAR)) {
-            return instance;
-        }
-        return instance.add(name, layer);
+        LayeredDraw.Layer replacement = VanillaHudLayers.capture(name, layer);
+        return replacement != null ? instance.add(name, replacement) : instance;
     }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package io.github.tt432.flexhud;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Contract of a full HUD frame run through {@link HeadlessHud}: every visible element draws once at its resolved rect,
+ * back to front, and a steady-state frame allocates nothing on the render thread.
+ *
+ * @author TT432
+ */
+class HeadlessHudTest {
+    private static final int WARMUP_FRAMES = 1000;
+    private static final int CHECKED_FRAMES = 100;
+
+    private static HeadlessHud hud(FlexHudApi.Impl impl, int elementCount) {
+        HudFixtures.populate(impl, elementCount, HudFixtures.FILL_RECT);
+        return new HeadlessHud(impl, HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT, 2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 1000})
+    void drawsEveryVisibleElementAtItsRect(int elementCount) {
+        FlexHudApi.Impl impl = new FlexHudApi.Impl();
+        RecordingGuiGraphics recorded = hud(impl, elementCount).frame();
+
+        assertEquals(elementCount - impl.getCulledCount(), recorded.getCallCount());
+        int call = 0;
+        for (FlexHudApi.HudElement element : impl.getRenderOrder()) {
+            if (element.isVisible()) {
+                RecordingGuiGraphics.DrawCall drawCall = recorded.getCall(call++);
+                FlexHudApi.Rect rect = element.getRect();
+                assertEquals(RecordingGuiGraphics.Kind.FILL, drawCall.kind, element.id.toString());
+                assertEquals((int) rect.getX(), (int) drawCall.x, element.id.toString());
+                assertEquals((int) rect.getY(), (int) drawCall.y, element.id.toString());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 1000})
+    void steadyStateFrameDoesNotAllocate(int elementCount) {
+        HeadlessHud hud = hud(new FlexHudApi.Impl(), elementCount);
+        assertEquals(0, hud.maxSteadyStateAllocatedBytes(WARMUP_FRAMES, CHECKED_FRAMES));
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.tt432.flexhud;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The packed layout kernels must agree bit for bit with {@link FlexHudApi.RelativeRect#toAbsolute}
+ *
+ * @author TT432
+ */
+class PackedRectsTest {
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 1000})
+    void resolveAllMatchesToAbsolute(int elementCount) {
+        FlexHudApi.RelativeRect[] relativeRects = HudFixtures.relativeRects(elementCount);
+        PackedRects packed = new PackedRects(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+            packed.pack(i, relativeRects[i]);
+        }
+        packed.resolveAll(elementCount, HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT);
+
+        FlexHudApi.Rect out = new FlexHudApi.Rect(0, 0, 0, 0);
+        for (int i = 0; i < elementCount; i++) {
+            packed.copyTo(i, out);
+            assertEquals(relativeRects[i].toAbsolute(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT), out);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 1000})
+    void resolveMatchesToAbsoluteInAFrame(int elementCount) {
+        FlexHudApi.RelativeRect[] relativeRects = HudFixtures.relativeRects(elementCount);
+        PackedRects packed = new PackedRects(elementCount);
+        FlexHudApi.Rect out = new FlexHudApi.Rect(0, 0, 0, 0);
+        FlexHudApi.Rect expected = new FlexHudApi.Rect(0, 0, 0, 0);
+        for (int i = 0; i < elementCount; i++) {
+            packed.pack(i, relativeRects[i]);
+            packed.resolve(i, 12, 34, 182, 22);
+            packed.copyTo(i, out);
+            assertEquals(relativeRects[i].toAbsolute(12, 34, 182, 22, expected), out);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.tt432.flexhud;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Geometry of {@link QuadBatch} and of the placeholders the config screen builds into it
+ *
+ * @author TT432
+ */
+class QuadBatchTest {
+    @Test
+    void everyPrimitiveAddsOneQuad() {
+        QuadBatch batch = new QuadBatch();
+        batch.fill(0, 0, 10, 10, 0xFFFFFFFF);
+        batch.hLine(0, 9, 0, 0xFFFFFFFF);
+        batch.vLine(0, 0, 9, 0xFFFFFFFF);
+
+        assertEquals(3, batch.getQuadCount());
+        assertEquals(3 * QuadBatch.VERTICES_PER_QUAD, batch.getVertexCount());
+    }
+
+    @Test
+    void clearEmptiesTheBatch() {
+        QuadBatch batch = new QuadBatch();
+        batch.fill(0, 0, 10, 10, 0xFFFFFFFF);
+        batch.clear();
+
+        assertEquals(0, batch.getQuadCount());
+        assertEquals(0, batch.getVertexCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 1000})
+    void placeholdersAddTheEditorsQuadsPerElement(int elementCount) {
+        FlexHudApi.RelativeRect[] relativeRects = HudFixtures.relativeRects(elementCount);
+        FlexHudConfigScreen.LabelBoxes labels = HudFixtures.labelBoxes();
+        QuadBatch batch = new QuadBatch();
+        int expected = 0;
+        for (FlexHudApi.RelativeRect relativeRect : relativeRects) {
+            FlexHudApi.Rect rect = relativeRect.toAbsolute(HudFixtures.SCREEN_WIDTH, HudFixtures.SCREEN_HEIGHT);
+            FlexHudConfigScreen.addPlaceholderQuads(batch, rect, true, 0x40FFFFFF, 0xFFFFFFFF, labels);
+            // Body, four outline lines, eight two-quad handles, id and mode label backgrounds, size label if it fits
+            expected += 1 + 4 + 8 * 2 + 2 + (labels.sizeVisible ? 1 : 0);
+        }
+
+        assertEquals(expected, batch.getQuadCount());
+        assertEquals(expected * QuadBatch.VERTICES_PER_QUAD, batch.getVertexCount());
+    }
+
+    @Test
+    void handlesSitOnTheCornersAndEdgeMidpoints() {
+        int x = 100;
+        int y = 80;
+        int w = 60;
+        int h = 40;
+        int size = FlexHudConfigScreen.HANDLE_SIZE;
+        QuadBatch batch = new QuadBatch();
+        FlexHudConfigScreen.addPlaceholderQuads(batch, new FlexHudApi.Rect(x, y, w, h), true,
+                0x40FFFFFF, 0xFFFFFFFF, HudFixtures.labelBoxes());
+
+        int left = x;
+        int centerX = x + w / 2 - size / 2;
+        int right = x + w - size;
+        int top = y;
+        int centerY = y + h / 2 - size / 2;
+        int bottom = y + h - size;
+        int[][] expected = {
+                {left, top}, {centerX, top}, {right, top},
+                {left, centerY}, {right, centerY},
+                {left, bottom}, {centerX, bottom}, {right, bottom}
+        };
+        // Handles follow the body and the four outline lines, each an outer and an inner quad
+        for (int handle = 0; handle < expected.length; handle++) {
+            int outer = 5 + handle * 2;
+            assertEquals(expected[handle][0], batch.getBound(outer, 0), "minX of handle " + handle);
+            assertEquals(expected[handle][1], batch.getBound(outer, 1), "minY of handle " + handle);
+            assertEquals(expected[handle][0] + size, batch.getBound(outer, 2), "maxX of handle " + handle);
+            assertEquals(expected[handle][1] + size, batch.getBound(outer, 3), "maxY of handle " + handle);
+            assertEquals(expected[handle][0] + 1, batch.getBound(outer + 1, 0), "inner minX of handle " + handle);
+            assertEquals(expected[handle][1] + 1, batch.getBound(outer + 1, 1), "inner minY of handle " + handle);
+        }
+    }
+
+    @Test
+    void fixedElementsHaveNoHandles() {
+        FlexHudConfigScreen.LabelBoxes labels = HudFixtures.labelBoxes();
+        QuadBatch batch = new QuadBatch();
+        FlexHudConfigScreen.addPlaceholderQuads(batch, new FlexHudApi.Rect(100, 80, 60, 40), false,
+                0x40FFFFFF, 0xFFFFFFFF, labels);
+
+        assertEquals(1 + 4 + 2 + (labels.sizeVisible ? 1 : 0), batch.getQuadCount());
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.client.DeltaTracker;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Drives the full per-frame HUD pass of an {@link FlexHudApi.Impl} against a simulated window and a
+ * {@link RecordingGuiGraphics}, measuring the bytes the calling thread allocated during each frame.
+ * Needs neither a game client nor a GPU, so layout and render loop regressions can be caught on any CI box.
+ *
+ * @author TT432
+ */
+final class HeadlessHud {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        if (THREADS.isThreadAllocatedMemorySupported()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    private final FlexHudApi.Impl impl;
+    private final RecordingGuiGraphics graphics = new RecordingGuiGraphics();
+
+    // Simulated window, in gui-scaled pixels
+    private int width;
+    private int height;
+    private double guiScale;
+
+    private long lastFrameAllocatedBytes = 0;
+
+    HeadlessHud(FlexHudApi.Impl impl, int width, int height, double guiScale) {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot measure per-thread allocations");
+        }
+        this.impl = impl;
+        resize(width, height, guiScale);
+    }
+
+    /**
+     * Simulate a window resize or GUI scale change, applied by the next frame
+     */
+    void resize(int width, int height, double guiScale) {
+        this.width = width;
+        this.height = height;
+        this.guiScale = guiScale;
+    }
+
+    /**
+     * Run one frame as FlexHud#onRenderGui does and record its draw calls
+     *
+     * @return the recorded frame, valid until the next call
+     */
+    RecordingGuiGraphics frame() {
+        graphics.reset();
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        impl.renderHud(graphics, DeltaTracker.ZERO, width, height, guiScale);
+        lastFrameAllocatedBytes = THREADS.getCurrentThreadAllocatedBytes() - before;
+        return graphics;
+    }
+
+    /**
+     * Bytes allocated by the calling thread during the last {@link #frame()}
+     */
+    long getLastFrameAllocatedBytes() {
+        return lastFrameAllocatedBytes;
+    }
+
+    /**
+     * Warm up, then run {@code frames} steady-state frames
+     *
+     * @return the most bytes any of the steady-state frames allocated
+     */
+    long maxSteadyStateAllocatedBytes(int warmupFrames, int frames) {
+        for (int i = 0; i < warmupFrames; i++) {
+            frame();
+        }
+        long max = 0;
+        for (int i = 0; i < frames; i++) {
+            frame();
+            max = Math.max(max, lastFrameAllocatedBytes);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.resources.ResourceLocation;
+
+/**
+ * Deterministic element sets and editor geometry shared by the tests and the benchmarks
+ *
+ * @author TT432
+ */
+final class HudFixtures {
+    static final int SCREEN_WIDTH = 960;
+    static final int SCREEN_HEIGHT = 540;
+
+    // Layer drawing one opaque fill over its rect
+    static final FlexHudApi.Layer FILL_RECT = (rect, guiGraphics, deltaTracker) -> guiGraphics.fill(
+            (int) rect.getX(), (int) rect.getY(), (int) (rect.getX() + rect.getW()), (int) (rect.getY() + rect.getH()),
+            0xFFFFFFFF);
+
+    private HudFixtures() {
+    }
+
+    static FlexHudApi.RelativeRect[] relativeRects(int count) {
+        FlexHudApi.Anchor[] anchors = FlexHudApi.Anchor.values();
+        FlexHudApi.RelativeRect[] result = new FlexHudApi.RelativeRect[count];
+        for (int i = 0; i < count; i++) {
+            FlexHudApi.Anchor anchor = anchors[i % anchors.length];
+            boolean relativeSize = i % 5 == 0;
+            float width = relativeSize ? 0.1f : 20 + i % 160;
+            float height = relativeSize ? 0.05f : 10 + i % 40;
+            result[i] = new FlexHudApi.RelativeRect(anchor, i % 37 - 18, i % 23 - 11, width, height, relativeSize);
+        }
+        return result;
+    }
+
+    /**
+     * Put {@code count} elements straight into the registry, bypassing config persistence
+     */
+    static void populate(FlexHudApi.Impl impl, int count, FlexHudApi.Layer layer) {
+        FlexHudApi.RelativeRect[] relativeRects = relativeRects(count);
+        for (int i = 0; i < count; i++) {
+            ResourceLocation id = ResourceLocation.fromNamespaceAndPath("bench", "element_" + i);
+            FlexHudApi.HudElement element = new FlexHudApi.HudElement(id, FlexHudApi.ResizeMode.Free, layer,
+                    relativeRects[i]);
+            impl.addElement(element);
+        }
+    }
+
+    /**
+     * Label boxes sized like the editor's labels of a typical element id, resize mode and size
+     */
+    static FlexHudConfigScreen.LabelBoxes labelBoxes() {
+        FlexHudConfigScreen.LabelBoxes labels = new FlexHudConfigScreen.LabelBoxes();
+        labels.idWidth = 80;
+        labels.modeWidth = 30;
+        labels.sizeWidth = 40;
+        return labels;
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.tt432.flexhud;
+
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.FormattedCharSequence;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GuiGraphics that records draw calls instead of submitting them, so layers run without a window or GPU.
+ * Fills, text, blits and sprites are recorded with the pose they were drawn with; the pose stack itself is the real one.
+ * Recorded calls are pooled and reused by the next frame, recording a steady-state frame does not allocate.
+ *
+ * @author TT432
+ */
+final class RecordingGuiGraphics extends GuiGraphics {
+    enum Kind {
+        FILL,
+        TEXT,
+        BLIT,
+        SPRITE,
+        SCISSOR
+    }
+
+    /**
+     * One recorded call, only valid until the next {@link #reset()}
+     */
+    static final class DrawCall {
+        Kind kind;
+        float x;
+        float y;
+        float width;
+        float height;
+        int color;
+        // Text, texture or sprite id, null for fills
+        Object payload;
+        final Matrix4f pose = new Matrix4f();
+    }
+
+    private final List<DrawCall> calls = new ArrayList<>();
+    private int callCount = 0;
+    private int flushCount = 0;
+
+    RecordingGuiGraphics() {
+        super(null, null);
+    }
+
+    /**
+     * Forget the recorded calls and the pose stack of the previous frame
+     */
+    void reset() {
+        callCount = 0;
+        flushCount = 0;
+        while (!pose().clear()) {
+            pose().popPose();
+        }
+        pose().setIdentity();
+    }
+
+    int getCallCount() {
+        return callCount;
+    }
+
+    DrawCall getCall(int index) {
+        return calls.get(index);
+    }
+
+    int getFlushCount() {
+        return flushCount;
+    }
+
+    private void record(Kind kind, float x, float y, float width, float height, int color, Object payload) {
+        DrawCall call;
+        if (callCount == calls.size()) {
+            call = new DrawCall();
+            calls.add(call);
+        } else {
+            call = calls.get(callCount);
+        }
+        callCount++;
+        call.kind = kind;
+        call.x = x;
+        call.y = y;
+        call.width = width;
+        call.height = height;
+        call.color = color;
+        call.payload = payload;
+        call.pose.set(pose().last().pose());
+    }
+
+    @Override
+    public void flush() {
+        flushCount++;
+    }
+
+    @Override
+    public void fill(RenderType renderType, int minX, int minY, int maxX, int maxY, int z, int color) {
+        record(Kind.FILL, Math.min(minX, maxX), Math.min(minY, maxY), Math.abs(maxX - minX), Math.abs(maxY - minY),
+                color, null);
+    }
+
+    @Override
+    public int drawString(Font font, @Nullable String text, float x, float y, int color, boolean dropShadow) {
+        if (text == null) {
+            return 0;
+        }
+        record(Kind.TEXT, x, y, 0, 0, color, text);
+        return (int) x; // No font to measure with
+    }
+
+    @Override
+    public int drawString(Font font, FormattedCharSequence text, float x, float y, int color, boolean dropShadow) {
+        record(Kind.TEXT, x, y, 0, 0, color, text);
+        return (int) x;
+    }
+
+    @Override
+    public void blit(ResourceLocation atlasLocation, int x, int y, int blitOffset, float uOffset, float vOffset,
+                     int uWidth, int vHeight, int textureWidth, int textureHeight) {
+        record(Kind.BLIT, x, y, uWidth, vHeight, -1, atlasLocation);
+    }
+
+    @Override
+    public void blit(ResourceLocation atlasLocation, int x, int y, int width, int height, float uOffset, float vOffset,
+                     int uWidth, int vHeight, int textureWidth, int textureHeight) {
+        record(Kind.BLIT, x, y, width, height, -1, atlasLocation);
+    }
+
+    @Override
+    public void blitSprite(ResourceLocation sprite, int x, int y, int blitOffset, int width, int height) {
+        record(Kind.SPRITE, x, y, width, height, -1, sprite);
+    }
+
+    @Override
+    public void enableScissor(int minX, int minY, int maxX, int maxY) {
+        record(Kind.SCISSOR, minX, minY, maxX - minX, maxY - minY, 0, null);
+    }
+
+    @Override
+    public void disableScissor() {
+    }
+
+    @Override
+    public void setColor(float red, float green, float blue, float alpha) {
+    }
+}